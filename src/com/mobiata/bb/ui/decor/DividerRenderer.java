@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package com.mobiata.bb.ui.decor;
+
+import net.rim.device.api.system.Bitmap;
+import net.rim.device.api.ui.Graphics;
+
+/**
+ * A DividerRenderer draws a batch of horizontal rules (dividers) of the same style in a single
+ * pass.  It supports the same styles as HRField and NinePatchHRField: a solid color, the current
+ * color of the graphics context, or a NinePatchBitmap.  The graphics state is set once per batch
+ * and the rule for a NinePatchBitmap is resolved during layout (see {@link #getRule(int)}), so
+ * painting does not allocate.  The caller keeps the width and rule it laid out with, so a single
+ * DividerRenderer can be shared by managers of different widths.
+ */
+public class DividerRenderer {
+
+	private int height;
+
+	private Integer color;
+
+	private NinePatchBitmap ninePatch;
+
+	/**
+	 * Creates a DividerRenderer with a specified height that uses the current color of the
+	 * graphics context.
+	 * 
+	 * @param height the height in pixels
+	 */
+	public DividerRenderer(int height) {
+		this.height = height;
+		color = null;
+	}
+
+	/**
+	 * Creates a DividerRenderer with a specified height and color.  Note that the color includes
+	 * an alpha value specified in the most significant bits (e.g. 0xAARRGGBB).
+	 * 
+	 * @param height the height in pixels
+	 * @param color the color to use, including alpha
+	 */
+	public DividerRenderer(int height, int color) {
+		this.height = height;
+		this.color = new Integer(color);
+	}
+
+	/**
+	 * Creates a DividerRenderer that uses a NinePatchBitmap to render the dividers at the
+	 * unstretched height of the NinePatchBitmap.
+	 * 
+	 * @param ninePatch the NinePatchBitmap to use
+	 */
+	public DividerRenderer(NinePatchBitmap ninePatch) {
+		this.ninePatch = ninePatch;
+		height = ninePatch.getBitmap().getHeight();
+	}
+
+	/**
+	 * Gets the height of a single divider.
+	 * 
+	 * @return the height in pixels
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Gets the rule to draw dividers of the specified width with.  This should be called from the
+	 * layout of the Manager that draws the dividers, and the result handed back to
+	 * {@link #paint(Graphics, int, int, Bitmap, int[], int, int)}.
+	 * 
+	 * @param width the width of the dividers
+	 * @return the rendered rule, or null if the dividers are not drawn from a NinePatchBitmap
+	 */
+	public Bitmap getRule(int width) {
+		if (ninePatch == null || width <= 0 || height <= 0) {
+			return null;
+		}
+		return ninePatch.getRenderedBitmap(width, height);
+	}
+
+	/**
+	 * Draws a batch of dividers using the specified graphics context.
+	 * 
+	 * @param g the graphics context to use
+	 * @param x the x position of the dividers
+	 * @param width the width of the dividers
+	 * @param rule the rule returned by {@link #getRule(int)} for the width
+	 * @param positions the y position of each divider
+	 * @param offset the index of the first divider to draw
+	 * @param count the number of dividers to draw
+	 */
+	public void paint(Graphics g, int x, int width, Bitmap rule, int[] positions, int offset, int count) {
+		if (count <= 0 || width <= 0 || height <= 0) {
+			return;
+		}
+
+		if (ninePatch != null) {
+			if (rule != null) {
+				for (int i = offset; i < offset + count; i++) {
+					g.drawBitmap(x, positions[i], width, height, rule, 0, 0);
+				}
+			}
+			return;
+		}
+
+		int priorAlpha = g.getGlobalAlpha();
+		int priorColor = g.getColor();
+
+		if (color != null) {
+			int clr = color.intValue();
+			int alpha = (clr >> 24) & 0xFF;
+
+			g.setGlobalAlpha(alpha);
+			g.setColor(clr);
+		}
+
+		for (int i = offset; i < offset + count; i++) {
+			g.fillRect(x, positions[i], width, height);
+		}
+
+		if (color != null) {
+			g.setColor(priorColor);
+			g.setGlobalAlpha(priorAlpha);
+		}
+	}
+
+}
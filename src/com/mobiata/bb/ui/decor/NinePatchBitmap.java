@@ -29,6 +29,8 @@
  */
 package com.mobiata.bb.ui.decor;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Hashtable;
 
 import net.rim.device.api.system.Bitmap;
@@ -67,14 +69,31 @@ public class NinePatchBitmap {
 	 */
 	public static final int V_SHORTCUT = 2;
 
-	private static final Hashtable renderedBitmaps = new Hashtable();
+	/**
+	 * Flag that lets the associated NinePatch graphic pick how to draw itself at each size.  Stretchable
+	 * regions that are uniform along the stretch (so that tiling gives the same output as stretching) are
+	 * tiled as if H_SHORTCUT or V_SHORTCUT had been given, and each size is either drawn directly or
+	 * rendered and cached depending on its estimated cost and how often it is reused.  See
+	 * {@link #getRenderStrategy(int, int)}.
+	 */
+	public static final int ADAPTIVE = 4;
+
+	/**
+	 * The number of sizes render strategies are kept for.  Once this many sizes have been drawn,
+	 * the strategies are forgotten and start over.
+	 */
+	public static final int MAX_STRATEGIES = 32;
 
-	private Bitmap rawBitmap;
+	private NinePatchCache cache;
 	private Bitmap bitmap;
-	private Bitmap[] bitmapPatches;
+	private XYRect[] patchRects;
 	private XYRect stretchRect;
 	private XYRect padRect;
+	private NinePatchLayout layout;
 	private int options;
+	private int renderOptions;
+	private boolean horizontalTileable;
+	private boolean verticalTileable;
 
 
 	/**
@@ -93,33 +112,242 @@ public class NinePatchBitmap {
 	 * @param options options (e.g. H_SHORTCUT and/or V_SHORTCUT)
 	 */
 	public NinePatchBitmap(Bitmap bmp, int options) {
-		rawBitmap = bmp;
+		cache = NinePatchCache.getCache(bmp, options);
+		this.options = options;
+		calculatePatches(bmp);
+		bitmap = copyBitmapSection(bmp, 1, 1, bmp.getWidth() - 2, bmp.getHeight() - 2);
+		init();
+	}
+
+	/**
+	 * Create a NinePatchBitmap by decoding a nine-patch PNG from a stream.
+	 * 
+	 * @param in the stream to read the nine-patch PNG from
+	 * @throws IOException if the stream cannot be read or is not a supported PNG
+	 */
+	public NinePatchBitmap(InputStream in) throws IOException {
+		this(in, 0);
+	}
+
+	/**
+	 * Create a NinePatchBitmap by decoding a nine-patch PNG from a stream.  The PNG is decoded row
+	 * by row straight into the unstretched bitmap and the stretch and padding markers are read as
+	 * the rows stream through, so neither the raw image with its 1px border nor a second copy of the
+	 * pixels is ever held in memory.  See {@link NinePatchDecoder}.
+	 * <p>
+	 * Nothing identifies the stream, so the renderings of the NinePatchBitmap are not shared with
+	 * any other NinePatchBitmap.  To share them between every NinePatchBitmap decoded from the same
+	 * asset, use {@link #NinePatchBitmap(InputStream, int, String)}.
+	 * 
+	 * @param in the stream to read the nine-patch PNG from
+	 * @param options options (e.g. H_SHORTCUT and/or V_SHORTCUT)
+	 * @throws IOException if the stream cannot be read or is not a supported PNG
+	 */
+	public NinePatchBitmap(InputStream in, int options) throws IOException {
+		this(in, options, null);
+	}
+
+	/**
+	 * Create a NinePatchBitmap by decoding a nine-patch PNG from a stream, sharing renderings with
+	 * every other NinePatchBitmap decoded with the same asset name and options.  The asset name must
+	 * identify the contents of the stream, e.g. the name of the resource it was opened from.
+	 * 
+	 * @param in the stream to read the nine-patch PNG from
+	 * @param options options (e.g. H_SHORTCUT and/or V_SHORTCUT)
+	 * @param name the name of the asset, or null to not share renderings
+	 * @throws IOException if the stream cannot be read or is not a supported PNG
+	 */
+	public NinePatchBitmap(InputStream in, int options, String name) throws IOException {
+		final NinePatchDecoder decoder = new NinePatchDecoder(in);
+		decoder.decode(new ScanlineSink() {
+			public void rows(int[] argb, int width, int y, int count) {
+				if (bitmap == null) {
+					bitmap = new Bitmap(decoder.getWidth(), decoder.getHeight());
+				}
+				bitmap.setARGB(argb, 0, width, 0, y, width, count);
+			}
+		});
+
+		cache = name == null ? new NinePatchCache() : NinePatchCache.getCache(name, options);
 		this.options = options;
-		calculatePatches();
-		bitmap = copyBitmapSection(rawBitmap, 1, 1, rawBitmap.getWidth() - 2, rawBitmap.getHeight() - 2);
+		stretchRect = new XYRect(decoder.getStretchX(), decoder.getStretchY(), decoder.getStretchWidth(), decoder.getStretchHeight());
+		padRect = new XYRect(decoder.getPadX(), decoder.getPadY(), decoder.getPadWidth(), decoder.getPadHeight());
+		init();
+	}
+
+	/**
+	 * Create a NinePatchBitmap that is a color-filtered variant of another NinePatchBitmap.  The
+	 * variant shares the stretch and pad rectangles of the source, but has its own renderings.
+	 * 
+	 * @param source the NinePatchBitmap to derive the variant from
+	 * @param filter the color filter to apply
+	 */
+	private NinePatchBitmap(NinePatchBitmap source, NinePatchColorFilter filter) {
+		cache = new NinePatchCache();
+		options = source.options;
+		stretchRect = source.stretchRect;
+		padRect = source.padRect;
 
-		bitmapPatches = new Bitmap[9];
+		int width = source.bitmap.getWidth();
+		int height = source.bitmap.getHeight();
+		int[] raw = new int[width*height];
+		source.bitmap.getARGB(raw, 0, width, 0, 0, width, height);
+		filter.filter(raw, 0, raw.length);
+		bitmap = new Bitmap(width, height);
+		bitmap.setARGB(raw, 0, width, 0, 0, width, height);
+		init();
+	}
 
-		int[] colX = new int[] { 0, stretchRect.x, stretchRect.x + stretchRect.width };
-		int[] colY = new int[] { 0, stretchRect.y, stretchRect.y + stretchRect.height };
-		int[] colWidths = new int[] { stretchRect.x, stretchRect.width, bitmap.getWidth() - stretchRect.x - stretchRect.width };
-		int[] rowHeights = new int[] { stretchRect.y, stretchRect.height, bitmap.getHeight() - stretchRect.y - stretchRect.height };
+	/**
+	 * Create a NinePatchBitmap that is a scaled version of another NinePatchBitmap.  Each of the nine
+	 * patches is resampled separately, so that no pixels bleed across the edges of the stretchable
+	 * region, and the stretch and pad rectangles are scaled to match.
+	 * 
+	 * @param source the NinePatchBitmap to scale
+	 * @param scale the scale factor, as a 16.16 fixed-point number
+	 */
+	private NinePatchBitmap(NinePatchBitmap source, int scale) {
+		cache = new NinePatchCache();
+		options = source.options;
 
-		bitmapPatches[0] = copyBitmapSection(bitmap, colX[0], colY[0], colWidths[0], rowHeights[0]);
-		bitmapPatches[1] = copyBitmapSection(bitmap, colX[1], colY[0], colWidths[1], rowHeights[0]);
-		bitmapPatches[2] = copyBitmapSection(bitmap, colX[2], colY[0], colWidths[2], rowHeights[0]);
+		int srcWidth = source.bitmap.getWidth();
+		int srcHeight = source.bitmap.getHeight();
+		int[] srcX = new int[] { 0, source.stretchRect.x, source.stretchRect.x + source.stretchRect.width, srcWidth };
+		int[] srcY = new int[] { 0, source.stretchRect.y, source.stretchRect.y + source.stretchRect.height, srcHeight };
+		int[] dstX = scaleBoundaries(srcX, scale);
+		int[] dstY = scaleBoundaries(srcY, scale);
+		int width = dstX[3];
+		int height = dstY[3];
 
-		bitmapPatches[3] = copyBitmapSection(bitmap, colX[0], colY[1], colWidths[0], rowHeights[1]);
-		bitmapPatches[4] = copyBitmapSection(bitmap, colX[1], colY[1], colWidths[1], rowHeights[1]);
-		bitmapPatches[5] = copyBitmapSection(bitmap, colX[2], colY[1], colWidths[2], rowHeights[1]);
+		stretchRect = new XYRect(dstX[1], dstY[1], dstX[2] - dstX[1], dstY[2] - dstY[1]);
 
-		bitmapPatches[6] = copyBitmapSection(bitmap, colX[0], colY[2], colWidths[0], rowHeights[2]);
-		bitmapPatches[7] = copyBitmapSection(bitmap, colX[1], colY[2], colWidths[1], rowHeights[2]);
-		bitmapPatches[8] = copyBitmapSection(bitmap, colX[2], colY[2], colWidths[2], rowHeights[2]);
+		XYRect srcPad = source.padRect;
+		int padLeft = scaleValue(srcPad.x, scale);
+		int padTop = scaleValue(srcPad.y, scale);
+		int padRight = scaleValue(srcWidth - srcPad.x - srcPad.width, scale);
+		int padBottom = scaleValue(srcHeight - srcPad.y - srcPad.height, scale);
+		// rounding must not leave the content with a negative size, or with none if it had some, and
+		// the content must fit in the bitmap so that no padding is negative
+		int padWidth = Math.min(Math.max(width - padLeft - padRight, srcPad.width > 0 ? 1 : 0), width);
+		int padHeight = Math.min(Math.max(height - padTop - padBottom, srcPad.height > 0 ? 1 : 0), height);
+		padLeft = Math.max(0, Math.min(padLeft, width - padWidth));
+		padTop = Math.max(0, Math.min(padTop, height - padHeight));
+		padRect = new XYRect(padLeft, padTop, padWidth, padHeight);
 
-		if (renderedBitmaps.get(rawBitmap) == null) {
-			renderedBitmaps.put(rawBitmap, new Hashtable());
+		int[] src = new int[srcWidth * srcHeight];
+		source.bitmap.getARGB(src, 0, srcWidth, 0, 0, srcWidth, srcHeight);
+		int[] raw = new int[width * height];
+		for (int row = 0; row < 3; row++) {
+			for (int col = 0; col < 3; col++) {
+				resample(src, srcWidth, srcX[col], srcY[row], srcX[col + 1] - srcX[col], srcY[row + 1] - srcY[row],
+						raw, width, dstX[col], dstY[row], dstX[col + 1] - dstX[col], dstY[row + 1] - dstY[row]);
+			}
 		}
+
+		bitmap = new Bitmap(width, height);
+		bitmap.setARGB(raw, 0, width, 0, 0, width, height);
+		init();
+	}
+
+	/**
+	 * Looks up the layout for the geometry of the unstretched bitmap, finds its nine patches and
+	 * works out the options to render with.  The patches are drawn straight from the unstretched
+	 * bitmap rather than from copies of their own.
+	 */
+	private void init() {
+		layout = NinePatchLayout.getLayout(bitmap.getWidth(), bitmap.getHeight(), stretchRect, padRect);
+		stretchRect = layout.getStretchRect();
+		padRect = layout.getPadRect();
+
+		patchRects = new XYRect[9];
+		for (int i = 0; i < 9; i++) {
+			patchRects[i] = layout.getPatchRect(i);
+		}
+
+		// a fixed axis has nothing to repeat, so it never uses the shortcut method
+		renderOptions = options;
+		if (stretchRect.width == 0) {
+			renderOptions &= ~H_SHORTCUT;
+		}
+		if (stretchRect.height == 0) {
+			renderOptions &= ~V_SHORTCUT;
+		}
+		if ((options & ADAPTIVE) == ADAPTIVE) {
+			detectTileable();
+			if (horizontalTileable) {
+				renderOptions |= H_SHORTCUT;
+			}
+			if (verticalTileable) {
+				renderOptions |= V_SHORTCUT;
+			}
+		}
+	}
+
+	/**
+	 * Gets a variant of this NinePatchBitmap with a color filter applied (e.g. a tinted version for
+	 * a focused state).  The filter is applied once to the unstretched bitmap and the variant shares
+	 * the stretch and pad rectangles of this NinePatchBitmap.  Variants are cached, so asking for the
+	 * same filter again returns the same NinePatchBitmap along with its renderings.  The variant is
+	 * created with the same options as this NinePatchBitmap.
+	 * 
+	 * @param filter the color filter to apply
+	 * @return the variant of this NinePatchBitmap
+	 */
+	public NinePatchBitmap getVariant(NinePatchColorFilter filter) {
+		Hashtable variants = cache.variants;
+
+		NinePatchBitmap variant = (NinePatchBitmap) variants.get(filter);
+		if (variant == null) {
+			variant = new NinePatchBitmap(this, filter);
+			variants.put(filter, variant);
+		}
+
+		return variant;
+	}
+
+	/**
+	 * Gets a version of this NinePatchBitmap scaled by the specified factor, so that a single asset can
+	 * serve screens of different densities.  The unstretched bitmap is resampled once per scale factor
+	 * and the result is cached, so asking for the same scale factor again returns the same
+	 * NinePatchBitmap along with its renderings.  Neither the bitmap nor its stretchable regions
+	 * ever shrink to nothing, and the padding always stays within the bitmap.
+	 * 
+	 * @param scale the scale factor, as a 16.16 fixed-point number (see net.rim.device.api.math.Fixed32)
+	 * @return the scaled NinePatchBitmap
+	 */
+	public NinePatchBitmap getScaled(int scale) {
+		if (scale <= 0) {
+			throw new IllegalArgumentException("scale must be positive");
+		}
+		if (scale == 0x10000) {
+			return this;
+		}
+
+		Hashtable scaled = cache.scaled;
+		Integer key = new Integer(scale);
+
+		NinePatchBitmap npbmp = (NinePatchBitmap) scaled.get(key);
+		if (npbmp == null) {
+			npbmp = new NinePatchBitmap(this, scale);
+			scaled.put(key, npbmp);
+		}
+
+		return npbmp;
+	}
+
+	/**
+	 * Gets a version of this NinePatchBitmap scaled from the density it was designed for to another
+	 * density (e.g. from 160 to 240 dpi).
+	 * 
+	 * @param fromDensity the density the NinePatchBitmap was designed for
+	 * @param toDensity the density to scale the NinePatchBitmap to
+	 * @return the scaled NinePatchBitmap
+	 */
+	public NinePatchBitmap getScaled(int fromDensity, int toDensity) {
+		if (fromDensity <= 0 || toDensity <= 0) {
+			throw new IllegalArgumentException("densities must be positive");
+		}
+		return getScaled((int) (((long) toDensity << 16) / fromDensity));
 	}
 
 	/**
@@ -132,31 +360,91 @@ public class NinePatchBitmap {
 	}
 
 	/**
-	 * Gets the padding rectangle.  The padding rectangle is the rectangle defined by the intersection of
-	 * the horizontal and vertical padding regions.
+	 * Gets a copy of the padding rectangle.  The padding rectangle is the rectangle defined by the
+	 * intersection of the horizontal and vertical padding regions.
 	 * 
 	 * @return the padding rectangle
 	 */
 	public XYRect getPadRect() {
-		return padRect;
+		return new XYRect(padRect.x, padRect.y, padRect.width, padRect.height);
 	}
 	
 	/**
 	 * Gets the padding for this NinePatchBitmap.  Whereas the padding rectangle defines a rectangular
 	 * region in the bitmap, the padding returns the number of pixels of padding on the four sides of
-	 * the content.
+	 * the content.  The padding is shared by every NinePatchBitmap with the same layout and must not
+	 * be modified.
 	 * 
 	 * @return the padding
 	 */
 	public XYEdges getPadding() {
-		XYEdges pad = new XYEdges();
+		return layout.getPadding();
+	}
 
-		pad.left = padRect.x;
-		pad.top = padRect.y;
-		pad.right = bitmap.getWidth() - padRect.width - padRect.x;
-		pad.bottom = bitmap.getHeight() - padRect.height - padRect.y;
-		
-		return pad;
+	/**
+	 * Gets the layout of this NinePatchBitmap, which describes its geometry apart from its pixels.
+	 * NinePatchBitmaps with the same geometry share the same layout.
+	 * 
+	 * @return the layout
+	 */
+	public NinePatchLayout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Clears everything cached for this NinePatchBitmap: its renderings, variants and scaled versions,
+	 * and those of every NinePatchBitmap created from the same bitmap (or asset name) with the same
+	 * options.  The cache stops being shared, so the bitmap it was created from can be garbage
+	 * collected.  Renderings made after clearing are cached again, but only for this NinePatchBitmap.
+	 */
+	public void clearCache() {
+		cache.clear();
+	}
+
+	/**
+	 * Clears the shared caches of every NinePatchBitmap created from a bitmap, dropping their renderings,
+	 * variants and scaled versions, along with the stretch distributions cached by their layouts (see
+	 * {@link NinePatchLayout#clearCaches()}), e.g. when the application is low on memory.
+	 * NinePatchBitmaps keep working and render again as they are drawn.
+	 */
+	public static void clearCaches() {
+		NinePatchCache.clearAll();
+		NinePatchLayout.clearCaches();
+	}
+
+	/**
+	 * Works out which of the nine patches differ between this NinePatchBitmap and another one, e.g.
+	 * the backgrounds for two visual states, so that switching between them only needs to repaint
+	 * the patches that changed.  If the two have different geometries or are rendered with different
+	 * options, every patch is considered to differ, as the same pixels are not stretched the same way.
+	 * Results are cached for each pair.
+	 * 
+	 * @param other the NinePatchBitmap to compare with
+	 * @return a bit mask with bit n set if patch n differs (0x1FF if all of them differ)
+	 */
+	public int getDifferingPatches(NinePatchBitmap other) {
+		if (other == this) {
+			return 0;
+		}
+		if (!other.layout.equals(layout) || other.renderOptions != renderOptions) {
+			return 0x1FF;
+		}
+
+		// the caches are kept per options, so the key covers the options of both sides
+		Hashtable differences = cache.patchDifferences;
+		Integer mask = (Integer) differences.get(other.cache);
+		if (mask == null) {
+			int bits = 0;
+			for (int i = 0; i < 9; i++) {
+				if (!samePixels(bitmap, other.bitmap, patchRects[i])) {
+					bits |= 1 << i;
+				}
+			}
+			mask = new Integer(bits);
+			differences.put(other.cache, mask);
+		}
+
+		return mask.intValue();
 	}
 
 	/**
@@ -167,7 +455,13 @@ public class NinePatchBitmap {
 	 * @return a version of this NinePatchBitmap rendered at the specified size
 	 */
 	public Bitmap getRenderedBitmap(int width, int height) {
-		Hashtable rendered = (Hashtable) renderedBitmaps.get(rawBitmap);
+		if (isThreePatchRow(height)) {
+			return getRenderedRow(width);
+		} else if (isThreePatchColumn(width)) {
+			return getRenderedColumn(height);
+		}
+
+		Hashtable rendered = cache.renderedBitmaps;
 		String renderedSize = width + "x" + height;
 		
 		Bitmap prerendered = (Bitmap) rendered.get(renderedSize);
@@ -181,15 +475,400 @@ public class NinePatchBitmap {
 	
 	/**
 	 * Draws the NinePatchBitmap into the specified rectangle using the specified graphics context.
+	 * A NinePatchBitmap that only stretches along one axis keeps its unstretched size along the
+	 * other, and is drawn at the top (or left) of the rectangle as a three-patch strip.
 	 * 
 	 * @param g the graphics context to use
 	 * @param rect the rectangle in which to draw
 	 */
 	public void draw(Graphics g, XYRect rect) {
+		if (stretchRect.height == 0 && stretchRect.width > 0) {
+			g.drawBitmap(rect.x, rect.y, rect.width, Math.min(rect.height, bitmap.getHeight()), getRenderedRow(rect.width), 0, 0);
+			return;
+		} else if (stretchRect.width == 0 && stretchRect.height > 0) {
+			g.drawBitmap(rect.x, rect.y, Math.min(rect.width, bitmap.getWidth()), rect.height, getRenderedColumn(rect.height), 0, 0);
+			return;
+		}
+
+		if ((options & ADAPTIVE) == ADAPTIVE) {
+			NinePatchRenderStrategy strategy = getRenderStrategy(rect.width, rect.height);
+			strategy.recordUse();
+			if (strategy.getStrategy() != NinePatchRenderStrategy.CACHED) {
+				drawDirect(g, rect.x, rect.y, strategy);
+				return;
+			}
+			strategy.setRendered();
+		}
+
 		Bitmap prerendered = getRenderedBitmap(rect.width, rect.height);
 		g.drawBitmap(rect.x, rect.y, rect.width, rect.height, prerendered, 0, 0);
 	}
 
+	/**
+	 * Gets the strategy used to draw this NinePatchBitmap at a specific size when it was created with the
+	 * ADAPTIVE option, along with the estimates and usage count it is based on.  Strategies are kept for
+	 * up to {@link #MAX_STRATEGIES} sizes and change as the size is reused.
+	 * 
+	 * @param width the width
+	 * @param height the height
+	 * @return the strategy for the specified size
+	 */
+	public NinePatchRenderStrategy getRenderStrategy(int width, int height) {
+		Hashtable strategies = cache.renderStrategies;
+		String size = width + "x" + height;
+
+		NinePatchRenderStrategy strategy = (NinePatchRenderStrategy) strategies.get(size);
+		if (strategy == null) {
+			if (strategies.size() >= MAX_STRATEGIES) {
+				strategies.clear();
+			}
+
+			boolean hShortcut = (renderOptions & H_SHORTCUT) == H_SHORTCUT;
+			boolean vShortcut = (renderOptions & V_SHORTCUT) == V_SHORTCUT;
+			boolean tiled = (width == bitmap.getWidth() || hShortcut) && (height == bitmap.getHeight() || vShortcut);
+
+			strategy = new NinePatchRenderStrategy(width, height, horizontalTileable, verticalTileable, tiled,
+					estimateRenderCost(width, height),
+					calculateRuns(layout.getColumnMap(width, hShortcut)),
+					calculateRuns(layout.getRowMap(height, vShortcut)));
+			if (isRendered(width, height, size)) {
+				strategy.setRendered();
+			}
+			strategies.put(size, strategy);
+		}
+
+		return strategy;
+	}
+
+	/**
+	 * Checks whether a rendering of the specified size is already cached.
+	 */
+	private boolean isRendered(int width, int height, String size) {
+		if (isThreePatchRow(height)) {
+			return cache.renderedRows.containsKey(new Integer(width));
+		} else if (isThreePatchColumn(width)) {
+			return cache.renderedColumns.containsKey(new Integer(height));
+		}
+		return cache.renderedBitmaps.containsKey(size);
+	}
+
+	/**
+	 * Draws the NinePatchBitmap straight into a graphics context, copying each run of consecutive source
+	 * pixels with a single drawBitmap call.
+	 * 
+	 * @param g the graphics context to use
+	 * @param x the x position to draw at
+	 * @param y the y position to draw at
+	 * @param strategy the strategy for the size being drawn
+	 */
+	private void drawDirect(Graphics g, int x, int y, NinePatchRenderStrategy strategy) {
+		int[] cols = strategy.columnRuns;
+		int[] rows = strategy.rowRuns;
+		for (int r = 0; r < rows.length; r += 3) {
+			for (int c = 0; c < cols.length; c += 3) {
+				g.drawBitmap(x + cols[c], y + rows[r], cols[c + 2], rows[r + 2], bitmap, cols[c + 1], rows[r + 1]);
+			}
+		}
+	}
+
+	/**
+	 * Estimates the cost of rendering the NinePatchBitmap at the specified size, by counting the copies
+	 * made by the renderer that would be used.
+	 * 
+	 * @param width the width
+	 * @param height the height
+	 * @return the estimated cost, in the units of NinePatchRenderStrategy
+	 */
+	private long estimateRenderCost(int width, int height) {
+		long copies;
+		if (isThreePatchRow(height) || isThreePatchColumn(width)) {
+			copies = 1;
+		} else {
+			int opsX = estimateCopies(width - bitmap.getWidth() + stretchRect.width, stretchRect.width, H_SHORTCUT);
+			int opsY = estimateCopies(height - bitmap.getHeight() + stretchRect.height, stretchRect.height, V_SHORTCUT);
+			copies = 4 + 2 * opsX + 2 * opsY + (long) opsX * opsY;
+		}
+
+		// each copy reads the source and writes the destination, and the rendering is allocated
+		return copies * 2 * NinePatchRenderStrategy.CALL_COST + 2L * width * height;
+	}
+
+	/**
+	 * Estimates how many copies it takes to fill the stretchable region along one axis.
+	 */
+	private int estimateCopies(int toFill, int span, int shortcut) {
+		if (toFill <= 0 || span <= 0) {
+			return 0;
+		}
+		return (renderOptions & shortcut) == shortcut ? (toFill + span - 1) / span : toFill;
+	}
+
+	/**
+	 * Finds the runs of consecutive source pixels in a stretch map.
+	 * 
+	 * @param map the source pixel for each destination pixel, or -1 for pixels that are not drawn
+	 * @return the runs as { destination, source, length } triples
+	 */
+	private static int[] calculateRuns(int[] map) {
+		int count = 0;
+		for (int i = 0; i < map.length; i++) {
+			if (map[i] >= 0 && (i == 0 || map[i] != map[i - 1] + 1 || map[i - 1] < 0)) {
+				count++;
+			}
+		}
+
+		int[] runs = new int[count * 3];
+		int n = -3;
+		for (int i = 0; i < map.length; i++) {
+			if (map[i] < 0) {
+				continue;
+			}
+			if (i == 0 || map[i] != map[i - 1] + 1 || map[i - 1] < 0) {
+				n += 3;
+				runs[n] = i;
+				runs[n + 1] = map[i];
+			}
+			runs[n + 2]++;
+		}
+		return runs;
+	}
+
+	/**
+	 * Checks whether the stretchable regions are uniform along the stretch: every column of the
+	 * horizontally stretchable region the same, and every row of the vertically stretchable region
+	 * the same.  Tiling such a region gives exactly the same output as stretching it.
+	 */
+	private void detectTileable() {
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		int[] raw = new int[width*height];
+		bitmap.getARGB(raw, 0, width, 0, 0, width, height);
+
+		horizontalTileable = stretchRect.width > 0;
+		for (int y = 0; y < height && horizontalTileable; y++) {
+			int first = raw[y * width + stretchRect.x];
+			for (int x = stretchRect.x + 1; x < stretchRect.x + stretchRect.width; x++) {
+				if (raw[y * width + x] != first) {
+					horizontalTileable = false;
+					break;
+				}
+			}
+		}
+
+		verticalTileable = stretchRect.height > 0;
+		for (int x = 0; x < width && verticalTileable; x++) {
+			int first = raw[stretchRect.y * width + x];
+			for (int y = stretchRect.y + 1; y < stretchRect.y + stretchRect.height; y++) {
+				if (raw[y * width + x] != first) {
+					verticalTileable = false;
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Determines whether the NinePatchBitmap can be rendered at the specified height as a
+	 * three-patch row.  This is the case when the height is the unstretched height of the
+	 * bitmap, so that only the horizontally stretchable region needs to be stretched.
+	 * 
+	 * @param height the desired height
+	 * @return true if renderings at the specified height only stretch horizontally
+	 */
+	public boolean isThreePatchRow(int height) {
+		return height == bitmap.getHeight() && stretchRect.width > 0;
+	}
+
+	/**
+	 * Determines whether the NinePatchBitmap can be rendered at the specified width as a
+	 * three-patch column.  This is the case when the width is the unstretched width of the
+	 * bitmap, so that only the vertically stretchable region needs to be stretched.
+	 * 
+	 * @param width the desired width
+	 * @return true if renderings at the specified width only stretch vertically
+	 */
+	public boolean isThreePatchColumn(int width) {
+		return width == bitmap.getWidth() && stretchRect.height > 0;
+	}
+
+	/**
+	 * Gets a rendered version of the NinePatchBitmap at a specific width and its unstretched
+	 * height.  Renderings are cached by width.
+	 * 
+	 * @param width the desired width
+	 * @return a version of this NinePatchBitmap rendered at the specified width
+	 */
+	public Bitmap getRenderedRow(int width) {
+		Hashtable rendered = cache.renderedRows;
+		Integer key = new Integer(width);
+
+		Bitmap prerendered = (Bitmap) rendered.get(key);
+		if (prerendered == null) {
+			prerendered = renderStrip(true, width, false);
+			rendered.put(key, prerendered);
+		}
+
+		return prerendered;
+	}
+
+	/**
+	 * Gets a rendered version of the NinePatchBitmap at a specific height and its unstretched
+	 * width.  Renderings are cached by height.
+	 * 
+	 * @param height the desired height
+	 * @return a version of this NinePatchBitmap rendered at the specified height
+	 */
+	public Bitmap getRenderedColumn(int height) {
+		Hashtable rendered = cache.renderedColumns;
+		Integer key = new Integer(height);
+
+		Bitmap prerendered = (Bitmap) rendered.get(key);
+		if (prerendered == null) {
+			prerendered = renderStrip(false, height, false);
+			rendered.put(key, prerendered);
+		}
+
+		return prerendered;
+	}
+
+	/**
+	 * Gets the horizontally stretchable region of the NinePatchBitmap stretched to fill a row of
+	 * the specified width, at its unstretched height.  The result only covers the space between the
+	 * left and right ends of the row and is intended to be drawn with {@link #drawRow}.  Renderings
+	 * are cached by width.
+	 * 
+	 * @param width the desired width of the whole row
+	 * @return the stretched center of the row, or null if the row has no center to fill
+	 */
+	public Bitmap getRowCenter(int width) {
+		if (width - bitmap.getWidth() + stretchRect.width <= 0 || stretchRect.width <= 0) {
+			return null;
+		}
+
+		Hashtable rendered = cache.rowCenters;
+		Integer key = new Integer(width);
+
+		Bitmap prerendered = (Bitmap) rendered.get(key);
+		if (prerendered == null) {
+			prerendered = renderStrip(true, width, true);
+			rendered.put(key, prerendered);
+		}
+
+		return prerendered;
+	}
+
+	/**
+	 * Draws a row at the unstretched height of the NinePatchBitmap using three drawBitmap calls:
+	 * the left end and right end straight from the unstretched bitmap and the stretched center
+	 * in between.  Nothing is allocated, so this is suitable for calling from paint.
+	 * 
+	 * @param g the graphics context to use
+	 * @param x the x position of the row
+	 * @param y the y position of the row
+	 * @param center the stretched center of the row, as returned by {@link #getRowCenter}
+	 */
+	public void drawRow(Graphics g, int x, int y, Bitmap center) {
+		int height = bitmap.getHeight();
+		int leftWidth = stretchRect.x;
+		int rightWidth = bitmap.getWidth() - stretchRect.x - stretchRect.width;
+
+		g.drawBitmap(x, y, leftWidth, height, bitmap, 0, 0);
+		g.drawBitmap(x + leftWidth, y, center.getWidth(), height, center, 0, 0);
+		g.drawBitmap(x + leftWidth + center.getWidth(), y, rightWidth, height, bitmap, bitmap.getWidth() - rightWidth, 0);
+	}
+
+	/**
+	 * Renders the NinePatchBitmap as a three-patch strip that is stretched along a single axis
+	 * and has its unstretched size along the other.  Rather than copying the stretchable region
+	 * pixel-by-pixel, the source pixels are read once and the strip is written in one pass.
+	 * 
+	 * @param horizontal true to stretch horizontally, false to stretch vertically
+	 * @param length the desired width (if horizontal) or height (if vertical)
+	 * @param centerOnly true to render only the stretched center, without the two ends
+	 * @return a rendering of the strip
+	 */
+	private Bitmap renderStrip(boolean horizontal, int length, boolean centerOnly) {
+		int srcWidth = bitmap.getWidth();
+		int srcHeight = bitmap.getHeight();
+		int start = horizontal ? stretchRect.x : stretchRect.y;
+		int span = horizontal ? stretchRect.width : stretchRect.height;
+		int end = (horizontal ? srcWidth : srcHeight) - start - span;
+		int toFill = length - start - end;
+
+		if (toFill <= 0) {
+			return render(horizontal ? length : srcWidth, horizontal ? srcHeight : length);
+		}
+
+		int[] map = horizontal ? layout.getColumnMap(length, (renderOptions & H_SHORTCUT) == H_SHORTCUT) : layout.getRowMap(length, (renderOptions & V_SHORTCUT) == V_SHORTCUT);
+
+		int offset = centerOnly ? start : 0;
+		int outLength = centerOnly ? toFill : length;
+		int outWidth = horizontal ? outLength : srcWidth;
+		int outHeight = horizontal ? srcHeight : outLength;
+
+		int[] src = new int[srcWidth * srcHeight];
+		bitmap.getARGB(src, 0, srcWidth, 0, 0, srcWidth, srcHeight);
+		int[] raw = new int[outWidth * outHeight];
+
+		for (int i = 0; i < outLength; i++) {
+			int s = map[i + offset];
+			if (horizontal) {
+				for (int row = 0; row < outHeight; row++) {
+					raw[row * outWidth + i] = src[row * srcWidth + s];
+				}
+			} else {
+				System.arraycopy(src, s * srcWidth, raw, i * outWidth, outWidth);
+			}
+		}
+
+		Bitmap bmp = new Bitmap(outWidth, outHeight);
+		bmp.setARGB(raw, 0, outWidth, 0, 0, outWidth, outHeight);
+		return bmp;
+	}
+
+	/**
+	 * Renders the NinePatchBitmap at the specified size one row at a time, handing the rows to a
+	 * ScanlineSink instead of building a Bitmap.  The output is the same as that of a regular rendering,
+	 * but only a single destination row and a single source row are held in memory, which allows very
+	 * large renderings to be produced.  Consecutive rows that are copies of the same source row are
+	 * handed over once, along with the number of times the row repeats.
+	 * 
+	 * @param width the desired width
+	 * @param height the desired height
+	 * @param sink the sink to hand the rows to
+	 */
+	public void render(int width, int height, ScanlineSink sink) {
+		int srcWidth = bitmap.getWidth();
+		int[] colMap = layout.getColumnMap(width, (renderOptions & H_SHORTCUT) == H_SHORTCUT);
+		int[] rowMap = layout.getRowMap(height, (renderOptions & V_SHORTCUT) == V_SHORTCUT);
+
+		int[] srcRow = new int[srcWidth];
+		int[] row = new int[width];
+
+		int y = 0;
+		while (y < height) {
+			int srcY = rowMap[y];
+			int count = 1;
+			while (y + count < height && rowMap[y + count] == srcY) {
+				count++;
+			}
+
+			if (srcY < 0) {
+				for (int x = 0; x < width; x++) {
+					row[x] = 0;
+				}
+			} else {
+				bitmap.getARGB(srcRow, 0, srcWidth, 0, srcY, srcWidth, 1);
+				for (int x = 0; x < width; x++) {
+					row[x] = colMap[x] < 0 ? 0 : srcRow[colMap[x]];
+				}
+			}
+
+			sink.rows(row, width, y, count);
+			y += count;
+		}
+	}
+
 	/**
 	 * Renders the NinePatchBitmap at the specified size.
 	 * 
@@ -201,40 +880,29 @@ public class NinePatchBitmap {
 		Bitmap bmp = new Bitmap(width, height);
 
 		// patch 0 - copy to the upper left corner
-		if (bitmapPatches[0].getWidth() > 0 && bitmapPatches[0].getHeight() > 0) {
-			copyBitmapSectionToBitmap(bmp, 0, 0, bitmapPatches[0].getWidth(), bitmapPatches[0].getHeight(), bitmapPatches[0], 0, 0);
+		if (patchRects[0].width > 0 && patchRects[0].height > 0) {
+			copyPatchToBitmap(bmp, 0, 0, patchRects[0].width, patchRects[0].height, 0, 0, 0);
 		}
 
 		// patch 1 - stretch across top
-		int widthToFill = width - bitmapPatches[0].getWidth() - bitmapPatches[2].getWidth();
-		int[] pixelWidths = new int[bitmapPatches[1].getWidth()];
-		int x = bitmapPatches[0].getWidth();
+		int widthToFill = width - patchRects[0].width - patchRects[2].width;
+		int[] pixelWidths = layout.getPixelWidths(width);
+		int x = patchRects[0].width;
 		if (widthToFill > 0) {
-			int widthPerPixel = widthToFill / bitmapPatches[1].getWidth();
-			int remainWidth = widthToFill - (widthPerPixel * bitmapPatches[1].getWidth());
-			int skip = (pixelWidths.length - remainWidth) / 2;
-			boolean needExtra = (pixelWidths.length - remainWidth) != (skip * 2);
-			for (int i = 0; i < pixelWidths.length; i++) {
-				pixelWidths[i] = widthPerPixel;
-				if (i >= skip && i < (needExtra ? (pixelWidths.length - (skip+1)) : (pixelWidths.length - skip))) {
-					pixelWidths[i]++;
-				}
-			}
-
-			if (bitmapPatches[1].getHeight() > 0) {
-				if ((options & H_SHORTCUT) == H_SHORTCUT) {
-					int maxX = width - bitmapPatches[2].getWidth();
+			if (patchRects[1].height > 0) {
+				if ((renderOptions & H_SHORTCUT) == H_SHORTCUT) {
+					int maxX = width - patchRects[2].width;
 					while (x < maxX) {
-						int w = bitmapPatches[1].getWidth();
+						int w = patchRects[1].width;
 						if (x+w > maxX)
 							w = maxX - x;
-						copyBitmapSectionToBitmap(bmp, x, 0, w, bitmapPatches[1].getHeight(), bitmapPatches[1], 0, 0);
+						copyPatchToBitmap(bmp, x, 0, w, patchRects[1].height, 1, 0, 0);
 						x += w;
 					}
 				} else {
 					for (int i = 0; i < pixelWidths.length && x < width; i++) {
 						for (int j = 0; j < pixelWidths[i] && x < width; j++) {
-							copyBitmapSectionToBitmap(bmp, x++, 0, 1, bitmapPatches[1].getHeight(), bitmapPatches[1], i, 0);
+							copyPatchToBitmap(bmp, x++, 0, 1, patchRects[1].height, 1, i, 0);
 						}
 					}
 				}
@@ -242,42 +910,31 @@ public class NinePatchBitmap {
 		}
 
 		// patch 2 - copy to upper right corner
-		x = width - bitmapPatches[2].getWidth();
+		x = width - patchRects[2].width;
 		if (x < 0) x = 0;
-		if (bitmapPatches[2].getWidth() > 0 && bitmapPatches[2].getHeight() > 0) {
-			copyBitmapSectionToBitmap(bmp, x, 0, bitmapPatches[2].getWidth(), bitmapPatches[2].getHeight(), bitmapPatches[2], 0, 0);
+		if (patchRects[2].width > 0 && patchRects[2].height > 0) {
+			copyPatchToBitmap(bmp, x, 0, patchRects[2].width, patchRects[2].height, 2, 0, 0);
 		}
 
 		// patch 3 - stretch down left edge
-		int heightToFill = height - bitmapPatches[0].getHeight() - bitmapPatches[6].getHeight();
-		int[] pixelHeights = new int[bitmapPatches[3].getHeight()];
-		int y = bitmapPatches[0].getHeight();
+		int heightToFill = height - patchRects[0].height - patchRects[6].height;
+		int[] pixelHeights = layout.getPixelHeights(height);
+		int y = patchRects[0].height;
 		if (heightToFill > 0) {
-			int heightPerPixel = heightToFill / bitmapPatches[3].getHeight();
-			int remainHeight = heightToFill - (heightPerPixel * bitmapPatches[3].getHeight());
-			int skip = (pixelHeights.length - remainHeight) / 2;
-			boolean needExtra = (pixelHeights.length - remainHeight) != (skip * 2);
-			for (int i = 0; i < pixelHeights.length; i++) {
-				pixelHeights[i] = heightPerPixel;
-				if (i >= skip && i < (needExtra ? (pixelHeights.length - (skip+1)) : (pixelHeights.length - skip))) {
-					pixelHeights[i]++;
-				}
-			}
-
-			if (bitmapPatches[3].getWidth() > 0) {
-				if ((options & V_SHORTCUT) == V_SHORTCUT) {
-					int maxY = height - bitmapPatches[6].getHeight();
+			if (patchRects[3].width > 0) {
+				if ((renderOptions & V_SHORTCUT) == V_SHORTCUT) {
+					int maxY = height - patchRects[6].height;
 					while (y < maxY) {
-						int h = bitmapPatches[3].getHeight();
+						int h = patchRects[3].height;
 						if (y+h > maxY) 
 							h = maxY - y;
-						copyBitmapSectionToBitmap(bmp, 0, y, bitmapPatches[3].getWidth(), h, bitmapPatches[3], 0, 0);
+						copyPatchToBitmap(bmp, 0, y, patchRects[3].width, h, 3, 0, 0);
 						y += h;
 					}
 				} else {
 					for (int i = 0; i < pixelHeights.length && y < height; i++) {
 						for (int j = 0; j < pixelHeights[i] && y < height; j++) {
-							copyBitmapSectionToBitmap(bmp, 0, y++, bitmapPatches[3].getWidth(), 1, bitmapPatches[3], 0, i);
+							copyPatchToBitmap(bmp, 0, y++, patchRects[3].width, 1, 3, 0, i);
 						}
 					}
 				}
@@ -286,50 +943,50 @@ public class NinePatchBitmap {
 
 		// patch 4 - stretch across middle and down middle
 		if (widthToFill > 0 && heightToFill > 0) {
-			y = bitmapPatches[1].getHeight();
-			if ((options & (H_SHORTCUT | V_SHORTCUT)) == (H_SHORTCUT | V_SHORTCUT)) {
-				int maxX = width - bitmapPatches[5].getWidth();
-				int maxY = height - bitmapPatches[7].getHeight();
+			y = patchRects[1].height;
+			if ((renderOptions & (H_SHORTCUT | V_SHORTCUT)) == (H_SHORTCUT | V_SHORTCUT)) {
+				int maxX = width - patchRects[5].width;
+				int maxY = height - patchRects[7].height;
 				while (y < maxY) {
-					int h = bitmapPatches[4].getHeight();
+					int h = patchRects[4].height;
 					if (y+h > maxY)
 						h = maxY - y;
-					x = bitmapPatches[3].getWidth();
+					x = patchRects[3].width;
 					while (x < maxX) {
-						int w = bitmapPatches[4].getWidth();
+						int w = patchRects[4].width;
 						if (x+w > maxX)
 							w = maxX - x;
-						copyBitmapSectionToBitmap(bmp, x, y, w, h, bitmapPatches[4], 0, 0);
+						copyPatchToBitmap(bmp, x, y, w, h, 4, 0, 0);
 						x += w;
 					}
 					y += h;
 				}
-			} else if ((options & H_SHORTCUT) == H_SHORTCUT) {
-				int maxX = width - bitmapPatches[5].getWidth();
+			} else if ((renderOptions & H_SHORTCUT) == H_SHORTCUT) {
+				int maxX = width - patchRects[5].width;
 				for (int i = 0; i < pixelHeights.length && y < height; i++) {
 					for (int j = 0; j < pixelHeights[i] && y < height; j++) {
-						x = bitmapPatches[3].getWidth();
+						x = patchRects[3].width;
 						while (x < maxX) {
-							int w = bitmapPatches[4].getWidth();
+							int w = patchRects[4].width;
 							if (x+w > maxX)
 								w = maxX - x;
-							copyBitmapSectionToBitmap(bmp, x, y, w, 1, bitmapPatches[4], 0, i);
+							copyPatchToBitmap(bmp, x, y, w, 1, 4, 0, i);
 							x += w;
 						}
 						y++;
 					}
 				}
-			} else if ((options & V_SHORTCUT) == V_SHORTCUT) {
-				int maxY = height - bitmapPatches[7].getHeight();
-				x = bitmapPatches[3].getWidth();
+			} else if ((renderOptions & V_SHORTCUT) == V_SHORTCUT) {
+				int maxY = height - patchRects[7].height;
+				x = patchRects[3].width;
 				for (int k = 0; k < pixelWidths.length && x < width; k++) {
 					for (int l = 0; l < pixelWidths[k] && x < width; l++) {
-						y = bitmapPatches[1].getHeight();
+						y = patchRects[1].height;
 						while (y < maxY) {
-							int h = bitmapPatches[4].getHeight();
+							int h = patchRects[4].height;
 							if (y+h > maxY)
 								h = maxY - y;
-							copyBitmapSectionToBitmap(bmp, x, y, 1, h, bitmapPatches[4], k, 0);
+							copyPatchToBitmap(bmp, x, y, 1, h, 4, k, 0);
 							y += h;
 						}
 						x++;
@@ -338,10 +995,10 @@ public class NinePatchBitmap {
 			} else {
 				for (int i = 0; i < pixelHeights.length && y < height; i++) {
 					for (int j = 0; j < pixelHeights[i] && y < height; j++) {
-						x = bitmapPatches[3].getWidth();
+						x = patchRects[3].width;
 						for (int k = 0; k < pixelWidths.length && x < width; k++) {
 							for (int l = 0; l < pixelWidths[k] && x < width; l++) {
-								copyBitmapSectionToBitmap(bmp, x++, y, 1, 1, bitmapPatches[4], k, i);
+								copyPatchToBitmap(bmp, x++, y, 1, 1, 4, k, i);
 							}
 						}
 						y++;
@@ -351,69 +1008,195 @@ public class NinePatchBitmap {
 		}
 
 		// patch 5 - stretch down right edge
-		if (heightToFill > 0 && bitmapPatches[5].getWidth() > 0) {
-			y = bitmapPatches[2].getHeight();
-			x = width - bitmapPatches[5].getWidth();
+		if (heightToFill > 0 && patchRects[5].width > 0) {
+			y = patchRects[2].height;
+			x = width - patchRects[5].width;
 			if (x < 0) x = 0;
-			if ((options & V_SHORTCUT) == V_SHORTCUT) {
-				int maxY = height - bitmapPatches[8].getHeight();
+			if ((renderOptions & V_SHORTCUT) == V_SHORTCUT) {
+				int maxY = height - patchRects[8].height;
 				while (y < maxY) {
-					int h = bitmapPatches[5].getHeight();
+					int h = patchRects[5].height;
 					if (y+h > maxY) 
 						h = maxY - y;
-					copyBitmapSectionToBitmap(bmp, x, y, bitmapPatches[5].getWidth(), h, bitmapPatches[5], 0, 0);
+					copyPatchToBitmap(bmp, x, y, patchRects[5].width, h, 5, 0, 0);
 					y += h;
 				}
 			} else {
 				for (int i = 0; i < pixelHeights.length && y < height; i++) {
 					for (int j = 0; j < pixelHeights[i] && y < height; j++) {
-						copyBitmapSectionToBitmap(bmp, x, y++, bitmapPatches[5].getWidth(), 1, bitmapPatches[5], 0, i);
+						copyPatchToBitmap(bmp, x, y++, patchRects[5].width, 1, 5, 0, i);
 					}
 				}
 			}
 		}
 
 		// patch 6 - copy to lower left corner
-		y = height - bitmapPatches[6].getHeight();
+		y = height - patchRects[6].height;
 		if (y < 0) y = 0;
-		if (bitmapPatches[6].getWidth() > 0 && bitmapPatches[6].getHeight() > 0)
-			copyBitmapSectionToBitmap(bmp, 0, y, bitmapPatches[6].getWidth(), bitmapPatches[6].getHeight(), bitmapPatches[6], 0, 0);
+		if (patchRects[6].width > 0 && patchRects[6].height > 0)
+			copyPatchToBitmap(bmp, 0, y, patchRects[6].width, patchRects[6].height, 6, 0, 0);
 
 		// patch 7 - stretch across bottom
-		if (widthToFill > 0 && bitmapPatches[7].getHeight() > 0) {
-			y = height - bitmapPatches[7].getHeight();
+		if (widthToFill > 0 && patchRects[7].height > 0) {
+			y = height - patchRects[7].height;
 			if (y < 0) y = 0;
-			x = bitmapPatches[6].getWidth();
-			if ((options & H_SHORTCUT) == H_SHORTCUT) {
-				int maxX = width - bitmapPatches[8].getWidth();
+			x = patchRects[6].width;
+			if ((renderOptions & H_SHORTCUT) == H_SHORTCUT) {
+				int maxX = width - patchRects[8].width;
 				while (x < maxX) {
-					int w = bitmapPatches[7].getWidth();
+					int w = patchRects[7].width;
 					if (x+w > maxX)
 						w = maxX - x;
-					copyBitmapSectionToBitmap(bmp, x, y, w, bitmapPatches[7].getHeight(), bitmapPatches[7], 0, 0);
+					copyPatchToBitmap(bmp, x, y, w, patchRects[7].height, 7, 0, 0);
 					x += w;
 				}
 			} else {
 				for (int i = 0; i < pixelWidths.length && x < width; i++) {
 					for (int j = 0; j < pixelWidths[i] && x < width; j++) {
-						copyBitmapSectionToBitmap(bmp, x++, y, 1, bitmapPatches[7].getHeight(), bitmapPatches[7], i, 0);
+						copyPatchToBitmap(bmp, x++, y, 1, patchRects[7].height, 7, i, 0);
 					}
 				}
 			}
 		}
 
 		// patch 8 - copy to lower right corner
-		if (bitmapPatches[8].getWidth() > 0 && bitmapPatches[8].getHeight() > 0) {
-			x = width - bitmapPatches[8].getWidth();
+		if (patchRects[8].width > 0 && patchRects[8].height > 0) {
+			x = width - patchRects[8].width;
 			if (x < 0) x = 0;
-			y = height - bitmapPatches[8].getHeight();
+			y = height - patchRects[8].height;
 			if (y < 0) y = 0;
-			copyBitmapSectionToBitmap(bmp, x, y, bitmapPatches[8].getWidth(), bitmapPatches[8].getHeight(), bitmapPatches[8], 0, 0);
+			copyPatchToBitmap(bmp, x, y, patchRects[8].width, patchRects[8].height, 8, 0, 0);
 		}
 
 		return bmp;
 	}
 
+	/**
+	 * Compares the pixels of two bitmaps within a rectangle.
+	 * 
+	 * @param a the first bitmap
+	 * @param b the second bitmap
+	 * @param rect the rectangle to compare
+	 * @return true if every pixel in the rectangle is the same
+	 */
+	private static boolean samePixels(Bitmap a, Bitmap b, XYRect rect) {
+		int width = rect.width;
+		int[] rowA = new int[width];
+		int[] rowB = new int[width];
+		for (int y = rect.y; y < rect.y + rect.height; y++) {
+			a.getARGB(rowA, 0, width, rect.x, y, width, 1);
+			b.getARGB(rowB, 0, width, rect.x, y, width, 1);
+			for (int x = 0; x < width; x++) {
+				if (rowA[x] != rowB[x]) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Scales a value by a 16.16 fixed-point factor, rounding to the nearest integer.
+	 */
+	private static int scaleValue(int value, int scale) {
+		return (int) (((long) value * scale + 0x8000) >> 16);
+	}
+
+	/**
+	 * Scales the boundaries of the three patches along one axis.  The stretchable region in the middle
+	 * keeps at least one pixel if it had any, so that the scaled NinePatchBitmap can still stretch, and
+	 * the axis as a whole keeps at least one pixel, so that the scaled bitmap is never empty.
+	 * 
+	 * @param boundaries the start of each patch and the end of the last one
+	 * @param scale the scale factor, as a 16.16 fixed-point number
+	 * @return the scaled boundaries
+	 */
+	private static int[] scaleBoundaries(int[] boundaries, int scale) {
+		int start = scaleValue(boundaries[1], scale);
+		int span = scaleValue(boundaries[2], scale) - start;
+		int end = scaleValue(boundaries[3], scale) - scaleValue(boundaries[2], scale);
+		if (span < 1 && boundaries[2] > boundaries[1]) {
+			span = 1;
+		}
+		if (start + span + end < 1) {
+			// only fixed patches are left, and they all rounded away
+			if (boundaries[1] > 0) {
+				start = 1;
+			} else {
+				end = 1;
+			}
+		}
+		return new int[] { 0, start, start + span, start + span + end };
+	}
+
+	/**
+	 * Resamples a rectangular region of pixels into another rectangular region using bilinear
+	 * filtering in 16.16 fixed point.  Samples are only taken from within the source region, and
+	 * are blended with premultiplied alpha so that transparent pixels do not darken their neighbours.
+	 */
+	private static void resample(int[] src, int srcScan, int srcLeft, int srcTop, int srcWidth, int srcHeight,
+			int[] dst, int dstScan, int dstLeft, int dstTop, int dstWidth, int dstHeight) {
+		if (srcWidth <= 0 || srcHeight <= 0 || dstWidth <= 0 || dstHeight <= 0) {
+			return;
+		}
+
+		for (int dy = 0; dy < dstHeight; dy++) {
+			int fy = samplePosition(dy, srcHeight, dstHeight);
+			int y0 = fy >> 16;
+			int y1 = Math.min(y0 + 1, srcHeight - 1);
+			int wy = (fy >> 8) & 0xFF;
+
+			for (int dx = 0; dx < dstWidth; dx++) {
+				int fx = samplePosition(dx, srcWidth, dstWidth);
+				int x0 = fx >> 16;
+				int x1 = Math.min(x0 + 1, srcWidth - 1);
+				int wx = (fx >> 8) & 0xFF;
+
+				int p00 = src[(srcTop + y0) * srcScan + srcLeft + x0];
+				int p10 = src[(srcTop + y0) * srcScan + srcLeft + x1];
+				int p01 = src[(srcTop + y1) * srcScan + srcLeft + x0];
+				int p11 = src[(srcTop + y1) * srcScan + srcLeft + x1];
+
+				int w00 = (256 - wx) * (256 - wy);
+				int w10 = wx * (256 - wy);
+				int w01 = (256 - wx) * wy;
+				int w11 = wx * wy;
+
+				int a00 = p00 >>> 24, a10 = p10 >>> 24, a01 = p01 >>> 24, a11 = p11 >>> 24;
+				int alphaSum = a00 * w00 + a10 * w10 + a01 * w01 + a11 * w11;
+
+				int pixel = 0;
+				if (alphaSum > 0) {
+					pixel = ((alphaSum + 0x8000) >> 16) << 24;
+					for (int shift = 16; shift >= 0; shift -= 8) {
+						// blend the premultiplied channel, then divide the alpha back out
+						long c = (long) ((p00 >> shift) & 0xFF) * a00 * w00
+								+ (long) ((p10 >> shift) & 0xFF) * a10 * w10
+								+ (long) ((p01 >> shift) & 0xFF) * a01 * w01
+								+ (long) ((p11 >> shift) & 0xFF) * a11 * w11;
+						int v = (int) ((c + alphaSum / 2) / alphaSum);
+						pixel |= Math.min(v, 0xFF) << shift;
+					}
+				}
+				dst[(dstTop + dy) * dstScan + dstLeft + dx] = pixel;
+			}
+		}
+	}
+
+	/**
+	 * Calculates where the center of a destination pixel falls in the source, as a 16.16 fixed-point
+	 * number clamped to the source.
+	 */
+	private static int samplePosition(int d, int srcSize, int dstSize) {
+		long pos = (((long) (2 * d + 1) * srcSize) << 16) / (2 * dstSize) - 0x8000;
+		if (pos < 0) {
+			pos = 0;
+		} else if (pos > ((long) (srcSize - 1) << 16)) {
+			pos = (long) (srcSize - 1) << 16;
+		}
+		return (int) pos;
+	}
+
 	/**
 	 * Copies a portion of a bitmap into a second bitmap.
 	 * 
@@ -432,6 +1215,23 @@ public class NinePatchBitmap {
 		dst.setARGB(raw, 0, width, dstXOffset, dstYOffset, width, height);
 	}
 
+	/**
+	 * Copies a portion of one of the nine patches of the unstretched bitmap into a second bitmap.
+	 * 
+	 * @param dst the destination bitmap
+	 * @param dstXOffset the destination x offset
+	 * @param dstYOffset the destination y offset
+	 * @param width the width to copy
+	 * @param height the height to copy
+	 * @param patch the patch number
+	 * @param srcXOffset the x offset within the patch
+	 * @param srcYOffset the y offset within the patch
+	 */
+	private void copyPatchToBitmap(Bitmap dst, int dstXOffset, int dstYOffset, int width, int height, int patch, int srcXOffset, int srcYOffset) {
+		XYRect rect = patchRects[patch];
+		copyBitmapSectionToBitmap(dst, dstXOffset, dstYOffset, width, height, bitmap, rect.x + srcXOffset, rect.y + srcYOffset);
+	}
+
 	/**
 	 * Creates a bitmap that is a copy of a portion of an existing bitmap.
 	 * 
@@ -461,8 +1261,10 @@ public class NinePatchBitmap {
 	 * rectangles.  Note that the lines defining the stretch and pad rectangles
 	 * must be pure black (#000000) and completely opaque (alpha 100%) in order
 	 * for this method to work properly.
+	 * 
+	 * @param rawBitmap the NinePatch-formatted image
 	 */
-	private void calculatePatches() {
+	private void calculatePatches(Bitmap rawBitmap) {
 		stretchRect = new XYRect();
 		padRect = new XYRect();
 
@@ -525,5 +1327,15 @@ public class NinePatchBitmap {
 		stretchRect.y -= 1;
 		padRect.x -= 1;
 		padRect.y -= 1;
+
+		// an axis without stretch markers is fixed: the whole bitmap goes in the first patch
+		if (stretchRect.x < 0) {
+			stretchRect.x = width - 2;
+			stretchRect.width = 0;
+		}
+		if (stretchRect.y < 0) {
+			stretchRect.y = height - 2;
+			stretchRect.height = 0;
+		}
 	}
 }
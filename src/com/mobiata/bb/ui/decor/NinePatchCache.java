@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package com.mobiata.bb.ui.decor;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+/**
+ * A NinePatchCache holds everything a NinePatchBitmap caches for one asset: its renderings, variants,
+ * scaled versions, patch comparisons and render strategies.  NinePatchBitmaps created from the same
+ * source with the same options share one cache, so that an asset is only rendered once at each size
+ * however many times it is loaded.  Derived NinePatchBitmaps (variants and scaled versions) each get a
+ * cache of their own, which is reachable only through the cache of the asset they were derived from.
+ */
+class NinePatchCache {
+
+	private static final Hashtable caches = new Hashtable();
+
+	private Object source;
+	private int options;
+
+	Hashtable renderedBitmaps = new Hashtable();
+	Hashtable renderedRows = new Hashtable();
+	Hashtable renderedColumns = new Hashtable();
+	Hashtable rowCenters = new Hashtable();
+	Hashtable variants = new Hashtable();
+	Hashtable scaled = new Hashtable();
+	Hashtable patchDifferences = new Hashtable();
+	Hashtable renderStrategies = new Hashtable();
+
+	/**
+	 * Creates a cache that is not shared.
+	 */
+	NinePatchCache() {
+	}
+
+	private NinePatchCache(Object source, int options) {
+		this.source = source;
+		this.options = options;
+	}
+
+	/**
+	 * Gets the shared cache for NinePatchBitmaps created from the specified source with the specified
+	 * options.
+	 * 
+	 * @param source the source of the asset (e.g. the raw bitmap)
+	 * @param options the options the NinePatchBitmap was created with
+	 * @return the cache
+	 */
+	static NinePatchCache getCache(Object source, int options) {
+		NinePatchCache cache = new NinePatchCache(source, options);
+
+		synchronized (caches) {
+			NinePatchCache shared = (NinePatchCache) caches.get(cache);
+			if (shared != null) {
+				return shared;
+			}
+			caches.put(cache, cache);
+		}
+
+		return cache;
+	}
+
+	/**
+	 * Empties this cache and, if it is shared, stops sharing it so that its source can be released.
+	 */
+	void clear() {
+		if (source != null) {
+			synchronized (caches) {
+				if (caches.get(this) == this) {
+					caches.remove(this);
+				}
+			}
+		}
+		clearEntries();
+	}
+
+	/**
+	 * Empties every shared cache.
+	 */
+	static void clearAll() {
+		synchronized (caches) {
+			for (Enumeration e = caches.keys(); e.hasMoreElements();) {
+				((NinePatchCache) e.nextElement()).clearEntries();
+			}
+			caches.clear();
+		}
+	}
+
+	private void clearEntries() {
+		renderedBitmaps.clear();
+		renderedRows.clear();
+		renderedColumns.clear();
+		rowCenters.clear();
+		variants.clear();
+		scaled.clear();
+		patchDifferences.clear();
+		renderStrategies.clear();
+	}
+
+	public boolean equals(Object obj) {
+		if (source == null || !(obj instanceof NinePatchCache)) {
+			return obj == this;
+		}
+		NinePatchCache other = (NinePatchCache) obj;
+		return options == other.options && source.equals(other.source);
+	}
+
+	public int hashCode() {
+		return source == null ? super.hashCode() : source.hashCode() * 31 + options;
+	}
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package com.mobiata.bb.ui.decor;
+
+/**
+ * A NinePatchColorFilter is a color transform that can be applied to a NinePatchBitmap in order
+ * to derive a variant of it (e.g. for a focused, pressed or disabled visual state) without
+ * shipping a separate image.  Color filters with the same type and value are equal, so they can
+ * be used as cache keys.
+ */
+public class NinePatchColorFilter {
+
+	/**
+	 * Filter type that blends the color of every pixel towards a tint color, by the alpha of the
+	 * tint color.  The alpha of the pixels is left unchanged.
+	 */
+	public static final int TINT = 1;
+
+	/**
+	 * Filter type that multiplies each channel (including alpha) of every pixel by the
+	 * corresponding channel of a color.
+	 */
+	public static final int MULTIPLY = 2;
+
+	/**
+	 * Filter type that scales the alpha of every pixel.
+	 */
+	public static final int ALPHA = 3;
+
+	private int type;
+	private int value;
+
+	/**
+	 * Creates a NinePatchColorFilter.
+	 * 
+	 * @param type the type of the filter (TINT, MULTIPLY or ALPHA)
+	 * @param value the color (0xAARRGGBB) for TINT and MULTIPLY, or the alpha (0-255) for ALPHA
+	 */
+	public NinePatchColorFilter(int type, int value) {
+		if (type != TINT && type != MULTIPLY && type != ALPHA) {
+			throw new IllegalArgumentException("unknown filter type: " + type);
+		}
+		this.type = type;
+		this.value = value;
+	}
+
+	/**
+	 * Creates a filter that tints towards the specified color.  The alpha of the color is the
+	 * strength of the tint, so 0xFF000000 turns every pixel black and 0x80000000 darkens every
+	 * pixel by half.
+	 * 
+	 * @param color the tint color, including alpha
+	 * @return the filter
+	 */
+	public static NinePatchColorFilter tint(int color) {
+		return new NinePatchColorFilter(TINT, color);
+	}
+
+	/**
+	 * Creates a filter that multiplies every pixel by the specified color.
+	 * 
+	 * @param color the color to multiply by, including alpha
+	 * @return the filter
+	 */
+	public static NinePatchColorFilter multiply(int color) {
+		return new NinePatchColorFilter(MULTIPLY, color);
+	}
+
+	/**
+	 * Creates a filter that scales the alpha of every pixel.
+	 * 
+	 * @param alpha the alpha to scale by (0-255)
+	 * @return the filter
+	 */
+	public static NinePatchColorFilter alpha(int alpha) {
+		return new NinePatchColorFilter(ALPHA, alpha);
+	}
+
+	public int getType() {
+		return type;
+	}
+
+	public int getValue() {
+		return value;
+	}
+
+	/**
+	 * Applies the filter to a single pixel.
+	 * 
+	 * @param argb the pixel (0xAARRGGBB)
+	 * @return the filtered pixel
+	 */
+	public int filter(int argb) {
+		int a = (argb >>> 24);
+		int r = (argb >> 16) & 0xFF;
+		int g = (argb >> 8) & 0xFF;
+		int b = argb & 0xFF;
+
+		switch (type) {
+		case TINT:
+			int strength = value >>> 24;
+			r += scale(((value >> 16) & 0xFF) - r, strength);
+			g += scale(((value >> 8) & 0xFF) - g, strength);
+			b += scale((value & 0xFF) - b, strength);
+			break;
+		case MULTIPLY:
+			a = scale(a, value >>> 24);
+			r = scale(r, (value >> 16) & 0xFF);
+			g = scale(g, (value >> 8) & 0xFF);
+			b = scale(b, value & 0xFF);
+			break;
+		case ALPHA:
+			a = scale(a, value & 0xFF);
+			break;
+		}
+
+		return (a << 24) | (r << 16) | (g << 8) | b;
+	}
+
+	/**
+	 * Applies the filter to a range of pixels in place.
+	 * 
+	 * @param argb the pixels (0xAARRGGBB)
+	 * @param offset the index of the first pixel to filter
+	 * @param length the number of pixels to filter
+	 */
+	public void filter(int[] argb, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			argb[i] = filter(argb[i]);
+		}
+	}
+
+	public boolean equals(Object obj) {
+		if (!(obj instanceof NinePatchColorFilter)) {
+			return false;
+		}
+		NinePatchColorFilter other = (NinePatchColorFilter) obj;
+		return type == other.type && value == other.value;
+	}
+
+	public int hashCode() {
+		return type * 31 + value;
+	}
+
+	/**
+	 * Scales a value by a factor in the range 0-255, where 255 leaves the value unchanged.
+	 */
+	private static int scale(int v, int factor) {
+		int t = v * factor;
+		return (t + (t >> 8) + 128) >> 8;
+	}
+}
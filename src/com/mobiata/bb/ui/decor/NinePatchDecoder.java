@@ -0,0 +1,621 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package com.mobiata.bb.ui.decor;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import net.rim.device.api.compress.ZLibInputStream;
+
+/**
+ * A NinePatchDecoder reads a nine-patch PNG (.9.png) from an InputStream one row at a time.
+ * While the rows stream through, the stretch markers on the top and left edges and the padding
+ * markers on the bottom and right edges are picked out, and only the inner pixels are handed on,
+ * row by row, to a ScanlineSink.  The decoder keeps no pixels of its own, so decoding only needs
+ * two rows of PNG data, a row of pixels, a read buffer and the inflater of the platform on top
+ * of whatever the sink keeps.
+ * <p>
+ * The stream is read in blocks of at most a chunk at a time, so it does not need to be buffered
+ * and nothing past the end of the PNG is read.  All non-interlaced PNG color types and bit depths
+ * are supported.
+ */
+public class NinePatchDecoder {
+
+	private static final int MARKER = 0xFF000000;
+
+	private static final int COLOR_GRAY = 0;
+	private static final int COLOR_RGB = 2;
+	private static final int COLOR_PALETTE = 3;
+	private static final int COLOR_GRAY_ALPHA = 4;
+	private static final int COLOR_RGB_ALPHA = 6;
+
+	private static final int CHUNK_IHDR = 0x49484452;
+	private static final int CHUNK_PLTE = 0x504C5445;
+	private static final int CHUNK_TRNS = 0x74524E53;
+	private static final int CHUNK_IDAT = 0x49444154;
+	private static final int CHUNK_IEND = 0x49454E44;
+
+	private static final int BUFFER_SIZE = 4096;
+
+	private InputStream in;
+	private byte[] buffer = new byte[BUFFER_SIZE];
+
+	private int rawWidth;
+	private int rawHeight;
+	private int bitDepth;
+	private int colorType;
+	private int[] palette;
+	private int transparent = -1;
+	private int[] transparentRGB;
+
+	private int chunkRemaining;
+	private int chunkType;
+
+	// marker runs: { state, start, length } where state is 0 before, 1 inside and 2 after the run
+	private int[] stretchX = new int[3];
+	private int[] stretchY = new int[3];
+	private int[] padX = new int[3];
+	private int[] padY = new int[3];
+
+	private boolean imageRead;
+
+	/**
+	 * Creates a NinePatchDecoder.
+	 * 
+	 * @param in the stream to read the nine-patch PNG from
+	 */
+	public NinePatchDecoder(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * Decodes the nine-patch PNG, handing the rows of the image without the 1px border to a sink as
+	 * they are decoded.  Rows arrive one at a time (with a count of 1), from top to bottom, and the
+	 * size of the image is known by the time the first row arrives.  The markers are only known once
+	 * this method returns.  The stream is read up to and including the IEND chunk, but is not closed.
+	 * 
+	 * @param sink the sink to hand the rows to
+	 * @throws IOException if the stream cannot be read or is not a supported PNG
+	 */
+	public void decode(ScanlineSink sink) throws IOException {
+		byte[] signature = new byte[8];
+		readFully(in, signature, 0, 8);
+		if ((signature[0] & 0xFF) != 0x89 || signature[1] != 'P' || signature[2] != 'N' || signature[3] != 'G') {
+			throw new IOException("not a PNG image");
+		}
+
+		nextChunk();
+		if (chunkType != CHUNK_IHDR) {
+			throw new IOException("PNG does not start with IHDR");
+		}
+		readHeader();
+		nextChunk();
+
+		while (true) {
+			if (chunkType == CHUNK_IEND) {
+				skipChunk();
+				break;
+			} else if (chunkType == CHUNK_PLTE) {
+				readPalette();
+			} else if (chunkType == CHUNK_TRNS) {
+				readTransparency();
+			} else if (chunkType == CHUNK_IDAT && !imageRead) {
+				readImage(sink);
+				// readImage leaves the chunk after the image data current
+				continue;
+			} else {
+				skipChunk();
+			}
+			nextChunk();
+		}
+
+		if (!imageRead) {
+			throw new IOException("PNG contains no image data");
+		}
+	}
+
+	/**
+	 * Gets the width of the image without the 1px border.
+	 * 
+	 * @return the width
+	 */
+	public int getWidth() {
+		return rawWidth - 2;
+	}
+
+	/**
+	 * Gets the height of the image without the 1px border.
+	 * 
+	 * @return the height
+	 */
+	public int getHeight() {
+		return rawHeight - 2;
+	}
+
+	/**
+	 * Gets the x position of the horizontally stretchable region, relative to the image without the border.
+	 * If there are no stretch markers along this axis, the axis is fixed and this is the width of the image.
+	 * 
+	 * @return the x position
+	 */
+	public int getStretchX() {
+		return stretchX[1] < 1 ? getWidth() : stretchX[1] - 1;
+	}
+
+	/**
+	 * Gets the y position of the vertically stretchable region, relative to the image without the border.
+	 * If there are no stretch markers along this axis, the axis is fixed and this is the height of the image.
+	 * 
+	 * @return the y position
+	 */
+	public int getStretchY() {
+		return stretchY[1] < 1 ? getHeight() : stretchY[1] - 1;
+	}
+
+	/**
+	 * Gets the width of the horizontally stretchable region.
+	 * 
+	 * @return the width
+	 */
+	public int getStretchWidth() {
+		return stretchX[1] < 1 ? 0 : stretchX[2];
+	}
+
+	/**
+	 * Gets the height of the vertically stretchable region.
+	 * 
+	 * @return the height
+	 */
+	public int getStretchHeight() {
+		return stretchY[1] < 1 ? 0 : stretchY[2];
+	}
+
+	/**
+	 * Gets the x position of the horizontal padding region, relative to the image without the border.
+	 * 
+	 * @return the x position
+	 */
+	public int getPadX() {
+		return padX[1] - 1;
+	}
+
+	/**
+	 * Gets the y position of the vertical padding region, relative to the image without the border.
+	 * 
+	 * @return the y position
+	 */
+	public int getPadY() {
+		return padY[1] - 1;
+	}
+
+	/**
+	 * Gets the width of the horizontal padding region.
+	 * 
+	 * @return the width
+	 */
+	public int getPadWidth() {
+		return padX[2];
+	}
+
+	/**
+	 * Gets the height of the vertical padding region.
+	 * 
+	 * @return the height
+	 */
+	public int getPadHeight() {
+		return padY[2];
+	}
+
+	private void readHeader() throws IOException {
+		byte[] data = readChunkData(13);
+		rawWidth = getInt(data, 0);
+		rawHeight = getInt(data, 4);
+		bitDepth = data[8] & 0xFF;
+		colorType = data[9] & 0xFF;
+		int compression = data[10] & 0xFF;
+		int filter = data[11] & 0xFF;
+		int interlace = data[12] & 0xFF;
+
+		if (rawWidth < 3 || rawHeight < 3) {
+			throw new IOException("nine-patch PNG must be at least 3x3");
+		}
+		if (compression != 0 || filter != 0) {
+			throw new IOException("unknown PNG compression or filter method");
+		}
+		if (interlace != 0) {
+			throw new IOException("interlaced PNGs are not supported");
+		}
+		boolean valid;
+		switch (colorType) {
+		case COLOR_GRAY:
+			valid = bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8 || bitDepth == 16;
+			break;
+		case COLOR_PALETTE:
+			valid = bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8;
+			break;
+		case COLOR_RGB:
+		case COLOR_GRAY_ALPHA:
+		case COLOR_RGB_ALPHA:
+			valid = bitDepth == 8 || bitDepth == 16;
+			break;
+		default:
+			valid = false;
+		}
+		if (!valid) {
+			throw new IOException("unsupported PNG color type " + colorType + " with bit depth " + bitDepth);
+		}
+	}
+
+	private void readPalette() throws IOException {
+		byte[] data = readChunkData(0);
+		int entries = Math.min(data.length / 3, 256);
+		palette = new int[256];
+		for (int i = 0; i < entries; i++) {
+			palette[i] = 0xFF000000 | (data[i * 3] & 0xFF) << 16 | (data[i * 3 + 1] & 0xFF) << 8 | (data[i * 3 + 2] & 0xFF);
+		}
+	}
+
+	private void readTransparency() throws IOException {
+		if (colorType == COLOR_PALETTE) {
+			if (palette == null) {
+				throw new IOException("PNG tRNS chunk before PLTE chunk");
+			}
+			byte[] data = readChunkData(0);
+			for (int i = 0; i < data.length && i < 256; i++) {
+				palette[i] = (data[i] & 0xFF) << 24 | (palette[i] & 0x00FFFFFF);
+			}
+		} else if (colorType == COLOR_GRAY) {
+			byte[] data = readChunkData(2);
+			transparent = getShort(data, 0);
+		} else if (colorType == COLOR_RGB) {
+			byte[] data = readChunkData(6);
+			transparentRGB = new int[3];
+			for (int i = 0; i < 3; i++) {
+				transparentRGB[i] = getShort(data, i * 2);
+			}
+		} else {
+			skipChunk();
+		}
+	}
+
+	private void readImage(ScanlineSink sink) throws IOException {
+		if (colorType == COLOR_PALETTE && palette == null) {
+			throw new IOException("PNG palette image without PLTE chunk");
+		}
+
+		int channels;
+		switch (colorType) {
+		case COLOR_RGB: channels = 3; break;
+		case COLOR_GRAY_ALPHA: channels = 2; break;
+		case COLOR_RGB_ALPHA: channels = 4; break;
+		default: channels = 1;
+		}
+		int bitsPerPixel = channels * bitDepth;
+		int bytesPerPixel = Math.max(1, bitsPerPixel / 8);
+		int rowBytes = (rawWidth * bitsPerPixel + 7) / 8;
+
+		InputStream data = new ZLibInputStream(new ImageDataInputStream(), false);
+		try {
+			readRows(data, sink, rowBytes, bytesPerPixel);
+		} finally {
+			data.close();
+		}
+		imageRead = true;
+
+		// skip whatever is left of the image data (e.g. the adler32 checksum) up to the next chunk
+		while (chunkType == CHUNK_IDAT) {
+			skipChunk();
+			nextChunk();
+		}
+	}
+
+	private void readRows(InputStream data, ScanlineSink sink, int rowBytes, int bytesPerPixel) throws IOException {
+		int innerWidth = rawWidth - 2;
+		int[] inner = new int[innerWidth];
+
+		byte[] previous = new byte[rowBytes];
+		byte[] current = new byte[rowBytes];
+		int[] row = new int[rawWidth];
+
+		for (int y = 0; y < rawHeight; y++) {
+			int filter = data.read();
+			if (filter < 0) {
+				throw new EOFException("PNG image data ends early");
+			}
+			readFully(data, current, 0, rowBytes);
+			unfilter(filter, current, previous, bytesPerPixel);
+			convertRow(current, row);
+
+			trackMarker(stretchY, y, row[0]);
+			trackMarker(padY, y, row[rawWidth - 1]);
+			if (y == 0) {
+				for (int x = 0; x < rawWidth; x++) {
+					trackMarker(stretchX, x, row[x]);
+				}
+			} else if (y == rawHeight - 1) {
+				for (int x = 0; x < rawWidth; x++) {
+					trackMarker(padX, x, row[x]);
+				}
+			} else {
+				System.arraycopy(row, 1, inner, 0, innerWidth);
+				sink.rows(inner, innerWidth, y - 1, 1);
+			}
+
+			byte[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+	}
+
+	/**
+	 * Tracks the first run of marker pixels along an edge.  A run that is still going at the end of
+	 * the edge is treated as having no length, which is how NinePatchBitmap has always behaved.
+	 */
+	private static void trackMarker(int[] run, int i, int pixel) {
+		if (run[0] == 0 && pixel == MARKER) {
+			run[0] = 1;
+			run[1] = i;
+		} else if (run[0] == 1 && pixel != MARKER) {
+			run[0] = 2;
+			run[2] = i - run[1];
+		}
+	}
+
+	private static void unfilter(int filter, byte[] current, byte[] previous, int bpp) throws IOException {
+		int length = current.length;
+		switch (filter) {
+		case 0:
+			break;
+		case 1:
+			for (int i = bpp; i < length; i++) {
+				current[i] += current[i - bpp];
+			}
+			break;
+		case 2:
+			for (int i = 0; i < length; i++) {
+				current[i] += previous[i];
+			}
+			break;
+		case 3:
+			for (int i = 0; i < length; i++) {
+				int left = i >= bpp ? current[i - bpp] & 0xFF : 0;
+				current[i] += (left + (previous[i] & 0xFF)) >> 1;
+			}
+			break;
+		case 4:
+			for (int i = 0; i < length; i++) {
+				int a = i >= bpp ? current[i - bpp] & 0xFF : 0;
+				int b = previous[i] & 0xFF;
+				int c = i >= bpp ? previous[i - bpp] & 0xFF : 0;
+				int p = a + b - c;
+				int pa = Math.abs(p - a);
+				int pb = Math.abs(p - b);
+				int pc = Math.abs(p - c);
+				current[i] += (pa <= pb && pa <= pc) ? a : (pb <= pc ? b : c);
+			}
+			break;
+		default:
+			throw new IOException("unknown PNG filter type " + filter);
+		}
+	}
+
+	private void convertRow(byte[] data, int[] row) {
+		for (int x = 0; x < rawWidth; x++) {
+			int pixel;
+			switch (colorType) {
+			case COLOR_GRAY: {
+				int v = sample(data, x);
+				int gray = scaleSample(v);
+				pixel = (v == transparent ? 0 : 0xFF000000) | (gray << 16) | (gray << 8) | gray;
+				break;
+			}
+			case COLOR_PALETTE:
+				pixel = palette[sample(data, x)];
+				break;
+			case COLOR_RGB:
+				if (bitDepth == 8) {
+					int i = x * 3;
+					int r = data[i] & 0xFF;
+					int g = data[i + 1] & 0xFF;
+					int b = data[i + 2] & 0xFF;
+					boolean clear = transparentRGB != null && r == transparentRGB[0] && g == transparentRGB[1] && b == transparentRGB[2];
+					pixel = (clear ? 0 : 0xFF000000) | (r << 16) | (g << 8) | b;
+				} else {
+					int i = x * 6;
+					int r = (data[i] & 0xFF) << 8 | (data[i + 1] & 0xFF);
+					int g = (data[i + 2] & 0xFF) << 8 | (data[i + 3] & 0xFF);
+					int b = (data[i + 4] & 0xFF) << 8 | (data[i + 5] & 0xFF);
+					boolean clear = transparentRGB != null && r == transparentRGB[0] && g == transparentRGB[1] && b == transparentRGB[2];
+					pixel = (clear ? 0 : 0xFF000000) | ((r >> 8) << 16) | ((g >> 8) << 8) | (b >> 8);
+				}
+				break;
+			case COLOR_GRAY_ALPHA: {
+				int step = bitDepth / 4;
+				int gray = data[x * step] & 0xFF;
+				int alpha = data[x * step + step / 2] & 0xFF;
+				pixel = (alpha << 24) | (gray << 16) | (gray << 8) | gray;
+				break;
+			}
+			default: {
+				int step = bitDepth / 2;
+				int i = x * step;
+				int s = step / 4;
+				pixel = ((data[i + 3 * s] & 0xFF) << 24) | ((data[i] & 0xFF) << 16) | ((data[i + s] & 0xFF) << 8) | (data[i + 2 * s] & 0xFF);
+			}
+			}
+			row[x] = pixel;
+		}
+	}
+
+	/**
+	 * Reads a single-channel sample of any bit depth.
+	 */
+	private int sample(byte[] data, int x) {
+		switch (bitDepth) {
+		case 16:
+			return (data[x * 2] & 0xFF) << 8 | (data[x * 2 + 1] & 0xFF);
+		case 8:
+			return data[x] & 0xFF;
+		default:
+			int perByte = 8 / bitDepth;
+			int shift = 8 - bitDepth * (x % perByte + 1);
+			return ((data[x / perByte] & 0xFF) >> shift) & ((1 << bitDepth) - 1);
+		}
+	}
+
+	/**
+	 * Scales a grayscale sample of any bit depth to 8 bits.
+	 */
+	private int scaleSample(int v) {
+		switch (bitDepth) {
+		case 16: return v >> 8;
+		case 8: return v;
+		case 4: return v * 0x11;
+		case 2: return v * 0x55;
+		default: return v * 0xFF;
+		}
+	}
+
+	private void nextChunk() throws IOException {
+		readFully(in, buffer, 0, 8);
+		chunkRemaining = getInt(buffer, 0);
+		chunkType = getInt(buffer, 4);
+		if (chunkRemaining < 0) {
+			throw new IOException("invalid PNG chunk length");
+		}
+	}
+
+	/**
+	 * Reads the rest of the current chunk in one go, along with its CRC.  None of the chunks read
+	 * this way may be longer than the read buffer.
+	 * 
+	 * @param minLength the least number of bytes the chunk must hold
+	 * @return the data of the chunk
+	 */
+	private byte[] readChunkData(int minLength) throws IOException {
+		if (chunkRemaining < minLength) {
+			throw new IOException("PNG chunk is too short");
+		}
+		if (chunkRemaining > BUFFER_SIZE) {
+			throw new IOException("PNG chunk is too long");
+		}
+		byte[] data = new byte[chunkRemaining];
+		readFully(in, data, 0, data.length);
+		chunkRemaining = 0;
+		skipChunk();
+		return data;
+	}
+
+	/**
+	 * Skips the rest of the current chunk, including its CRC.
+	 */
+	private void skipChunk() throws IOException {
+		int n = chunkRemaining + 4;
+		while (n > 0) {
+			int length = Math.min(n, BUFFER_SIZE);
+			readFully(in, buffer, 0, length);
+			n -= length;
+		}
+		chunkRemaining = 0;
+	}
+
+	private static int getInt(byte[] b, int off) {
+		return (b[off] & 0xFF) << 24 | (b[off + 1] & 0xFF) << 16 | (b[off + 2] & 0xFF) << 8 | (b[off + 3] & 0xFF);
+	}
+
+	private static int getShort(byte[] b, int off) {
+		return (b[off] & 0xFF) << 8 | (b[off + 1] & 0xFF);
+	}
+
+	private static void readFully(InputStream in, byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			int n = in.read(b, off, len);
+			if (n < 0) {
+				throw new EOFException("PNG ends early");
+			}
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * An InputStream over the data of consecutive IDAT chunks, read through the read buffer.
+	 */
+	private class ImageDataInputStream extends InputStream {
+
+		private int position;
+		private int length;
+
+		public int read() throws IOException {
+			if (position == length && !fill()) {
+				return -1;
+			}
+			return buffer[position++] & 0xFF;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (position == length && !fill()) {
+				return -1;
+			}
+			int n = Math.min(len, length - position);
+			System.arraycopy(buffer, position, b, off, n);
+			position += n;
+			return n;
+		}
+
+		/**
+		 * Reads the next block of image data into the read buffer, moving on to the next IDAT
+		 * chunk once the current one is used up.
+		 * 
+		 * @return true if there is image data left to read
+		 */
+		private boolean fill() throws IOException {
+			while (chunkRemaining == 0 && chunkType == CHUNK_IDAT) {
+				skipChunk();
+				nextChunk();
+			}
+			if (chunkType != CHUNK_IDAT) {
+				return false;
+			}
+			int n = in.read(buffer, 0, Math.min(BUFFER_SIZE, chunkRemaining));
+			if (n < 0) {
+				throw new EOFException("PNG ends early");
+			}
+			chunkRemaining -= n;
+			position = 0;
+			length = n;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,382 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package com.mobiata.bb.ui.decor;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+import net.rim.device.api.ui.XYEdges;
+import net.rim.device.api.ui.XYRect;
+
+/**
+ * A NinePatchLayout is the geometry of a NinePatchBitmap, kept apart from its pixels: the size
+ * of the unstretched bitmap, the stretch and pad rectangles, the rectangles of the nine patches,
+ * the padding, and how the stretchable region is distributed over each size the NinePatchBitmap
+ * is rendered at.  Layouts are interned, so every NinePatchBitmap with the same geometry (e.g. the
+ * same artwork in different colors) shares one layout along with its cached distributions.
+ * <p>
+ * Layouts are immutable.  The rectangles returned are copies, but the padding and distributions
+ * returned are shared and must not be modified.
+ */
+public class NinePatchLayout {
+
+	private static final Hashtable layouts = new Hashtable();
+
+	/**
+	 * The number of sizes distributions are cached for along each axis.  Once this many sizes have
+	 * been cached, the cache starts over.
+	 */
+	private static final int MAX_CACHED_SIZES = 32;
+
+	private int width;
+	private int height;
+	private XYRect stretchRect;
+	private XYRect padRect;
+	private XYEdges padding;
+	private XYRect[] patchRects;
+
+	private Hashtable pixelWidths;
+	private Hashtable pixelHeights;
+
+	private NinePatchLayout(int width, int height, XYRect stretchRect, XYRect padRect) {
+		this.width = width;
+		this.height = height;
+		this.stretchRect = new XYRect(stretchRect.x, stretchRect.y, stretchRect.width, stretchRect.height);
+		this.padRect = new XYRect(padRect.x, padRect.y, padRect.width, padRect.height);
+	}
+
+	/**
+	 * Gets the layout for the specified geometry.  Equal geometries always give the same layout.
+	 * 
+	 * @param width the width of the unstretched bitmap
+	 * @param height the height of the unstretched bitmap
+	 * @param stretchRect the stretch rectangle
+	 * @param padRect the padding rectangle
+	 * @return the layout
+	 */
+	public static NinePatchLayout getLayout(int width, int height, XYRect stretchRect, XYRect padRect) {
+		NinePatchLayout layout = new NinePatchLayout(width, height, stretchRect, padRect);
+
+		synchronized (layouts) {
+			NinePatchLayout interned = (NinePatchLayout) layouts.get(layout);
+			if (interned != null) {
+				return interned;
+			}
+			layout.prepare();
+			layouts.put(layout, layout);
+		}
+
+		return layout;
+	}
+
+	/**
+	 * Empties the distributions cached by every layout and stops interning the layouts handed out so
+	 * far, so that layouts no longer used by any NinePatchBitmap can be garbage collected.  Layouts
+	 * still in use keep working and cache distributions again as they are rendered; equal geometries
+	 * asked for afterwards share a new layout.
+	 */
+	public static void clearCaches() {
+		synchronized (layouts) {
+			for (Enumeration e = layouts.keys(); e.hasMoreElements();) {
+				NinePatchLayout layout = (NinePatchLayout) e.nextElement();
+				layout.pixelWidths.clear();
+				layout.pixelHeights.clear();
+			}
+			layouts.clear();
+		}
+	}
+
+	/**
+	 * Calculates everything that only depends on the geometry.  This is only done for layouts
+	 * that end up being interned.
+	 */
+	private void prepare() {
+		padding = new XYEdges();
+		padding.left = padRect.x;
+		padding.top = padRect.y;
+		padding.right = width - padRect.width - padRect.x;
+		padding.bottom = height - padRect.height - padRect.y;
+
+		int[] colX = new int[] { 0, stretchRect.x, stretchRect.x + stretchRect.width };
+		int[] colY = new int[] { 0, stretchRect.y, stretchRect.y + stretchRect.height };
+		int[] colWidths = new int[] { stretchRect.x, stretchRect.width, width - stretchRect.x - stretchRect.width };
+		int[] rowHeights = new int[] { stretchRect.y, stretchRect.height, height - stretchRect.y - stretchRect.height };
+
+		patchRects = new XYRect[9];
+		for (int row = 0; row < 3; row++) {
+			for (int col = 0; col < 3; col++) {
+				patchRects[row * 3 + col] = new XYRect(colX[col], colY[row], colWidths[col], rowHeights[row]);
+			}
+		}
+
+		pixelWidths = new Hashtable();
+		pixelHeights = new Hashtable();
+	}
+
+	/**
+	 * Gets the width of the unstretched bitmap.
+	 * 
+	 * @return the width
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the height of the unstretched bitmap.
+	 * 
+	 * @return the height
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Gets a copy of the stretch rectangle.
+	 * 
+	 * @return the stretch rectangle
+	 */
+	public XYRect getStretchRect() {
+		return new XYRect(stretchRect.x, stretchRect.y, stretchRect.width, stretchRect.height);
+	}
+
+	/**
+	 * Gets a copy of the padding rectangle.
+	 * 
+	 * @return the padding rectangle
+	 */
+	public XYRect getPadRect() {
+		return new XYRect(padRect.x, padRect.y, padRect.width, padRect.height);
+	}
+
+	/**
+	 * Gets the number of pixels of padding on the four sides of the content.
+	 * 
+	 * @return the padding
+	 */
+	public XYEdges getPadding() {
+		return padding;
+	}
+
+	/**
+	 * Gets a copy of the rectangle of one of the nine patches in the unstretched bitmap.  Patches are
+	 * numbered from 0 (upper left) to 8 (lower right), row by row.
+	 * 
+	 * @param patch the patch number
+	 * @return the rectangle of the patch
+	 */
+	public XYRect getPatchRect(int patch) {
+		XYRect rect = patchRects[patch];
+		return new XYRect(rect.x, rect.y, rect.width, rect.height);
+	}
+
+	/**
+	 * Calculates where one of the nine patches ends up in a rendering of the specified size.  As in
+	 * the rendering, the patches on the right and bottom edges win when the rendering is smaller than
+	 * the fixed patches.
+	 * 
+	 * @param patch the patch number
+	 * @param renderWidth the width of the rendering
+	 * @param renderHeight the height of the rendering
+	 * @param rect the rectangle to store the bounds of the patch in
+	 */
+	public void getPatchBounds(int patch, int renderWidth, int renderHeight, XYRect rect) {
+		int col = patch % 3;
+		int row = patch / 3;
+		int right = width - stretchRect.x - stretchRect.width;
+		int bottom = height - stretchRect.y - stretchRect.height;
+
+		int x0 = Math.min(stretchRect.x, renderWidth);
+		int x1 = Math.max(x0, renderWidth - right);
+		int y0 = Math.min(stretchRect.y, renderHeight);
+		int y1 = Math.max(y0, renderHeight - bottom);
+
+		int left = col == 0 ? 0 : (col == 1 ? x0 : Math.max(0, renderWidth - right));
+		int top = row == 0 ? 0 : (row == 1 ? y0 : Math.max(0, renderHeight - bottom));
+		int w = col == 0 ? x0 : (col == 1 ? x1 - x0 : renderWidth - left);
+		int h = row == 0 ? y0 : (row == 1 ? y1 - y0 : renderHeight - top);
+		rect.set(left, top, w, h);
+	}
+
+	/**
+	 * Gets how many pixels each column of the stretchable region is stretched to when rendering at
+	 * the specified width.  Distributions are cached for a limited number of widths.
+	 * 
+	 * @param renderWidth the width of the rendering
+	 * @return the number of pixels for each column of the stretchable region
+	 */
+	public int[] getPixelWidths(int renderWidth) {
+		return getPixelSizes(pixelWidths, renderWidth - width + stretchRect.width, stretchRect.width, renderWidth);
+	}
+
+	/**
+	 * Gets how many pixels each row of the stretchable region is stretched to when rendering at
+	 * the specified height.  Distributions are cached for a limited number of heights.
+	 * 
+	 * @param renderHeight the height of the rendering
+	 * @return the number of pixels for each row of the stretchable region
+	 */
+	public int[] getPixelHeights(int renderHeight) {
+		return getPixelSizes(pixelHeights, renderHeight - height + stretchRect.height, stretchRect.height, renderHeight);
+	}
+
+	/**
+	 * Maps each column of a rendering at the specified width to the column of the unstretched bitmap
+	 * it is copied from.
+	 * 
+	 * @param renderWidth the width of the rendering
+	 * @param shortcut true to use the shortcut method
+	 * @return the source column for each column of the rendering, or -1 for columns that are not drawn
+	 */
+	int[] getColumnMap(int renderWidth, boolean shortcut) {
+		return calculateStretchMap(renderWidth, stretchRect.x, stretchRect.width, width, shortcut ? null : getPixelWidths(renderWidth));
+	}
+
+	/**
+	 * Maps each row of a rendering at the specified height to the row of the unstretched bitmap
+	 * it is copied from.
+	 * 
+	 * @param renderHeight the height of the rendering
+	 * @param shortcut true to use the shortcut method
+	 * @return the source row for each row of the rendering, or -1 for rows that are not drawn
+	 */
+	int[] getRowMap(int renderHeight, boolean shortcut) {
+		return calculateStretchMap(renderHeight, stretchRect.y, stretchRect.height, height, shortcut ? null : getPixelHeights(renderHeight));
+	}
+
+	public boolean equals(Object obj) {
+		if (!(obj instanceof NinePatchLayout)) {
+			return false;
+		}
+		NinePatchLayout other = (NinePatchLayout) obj;
+		return width == other.width && height == other.height
+				&& stretchRect.x == other.stretchRect.x && stretchRect.y == other.stretchRect.y
+				&& stretchRect.width == other.stretchRect.width && stretchRect.height == other.stretchRect.height
+				&& padRect.x == other.padRect.x && padRect.y == other.padRect.y
+				&& padRect.width == other.padRect.width && padRect.height == other.padRect.height;
+	}
+
+	public int hashCode() {
+		int hash = width;
+		hash = hash * 31 + height;
+		hash = hash * 31 + stretchRect.x;
+		hash = hash * 31 + stretchRect.y;
+		hash = hash * 31 + stretchRect.width;
+		hash = hash * 31 + stretchRect.height;
+		hash = hash * 31 + padRect.x;
+		hash = hash * 31 + padRect.y;
+		hash = hash * 31 + padRect.width;
+		return hash * 31 + padRect.height;
+	}
+
+	private static int[] getPixelSizes(Hashtable cache, int toFill, int count, int size) {
+		Integer key = new Integer(size);
+		int[] pixelSizes = (int[]) cache.get(key);
+		if (pixelSizes == null) {
+			if (cache.size() >= MAX_CACHED_SIZES) {
+				cache.clear();
+			}
+			pixelSizes = calculatePixelSizes(toFill, count);
+			cache.put(key, pixelSizes);
+		}
+		return pixelSizes;
+	}
+
+	/**
+	 * Calculates how many destination pixels each pixel of a stretchable region should be
+	 * stretched to in order to fill the specified number of pixels.  Any remaining pixels
+	 * are handed out to the pixels in the middle of the region.
+	 * 
+	 * @param toFill the number of pixels to fill
+	 * @param count the number of pixels in the stretchable region
+	 * @return the number of destination pixels for each pixel in the stretchable region
+	 */
+	private static int[] calculatePixelSizes(int toFill, int count) {
+		int[] pixelSizes = new int[count];
+		if (toFill > 0 && count > 0) {
+			int sizePerPixel = toFill / count;
+			int remain = toFill - (sizePerPixel * count);
+			int skip = (count - remain) / 2;
+			boolean needExtra = (count - remain) != (skip * 2);
+			for (int i = 0; i < count; i++) {
+				pixelSizes[i] = sizePerPixel;
+				if (i >= skip && i < (needExtra ? (count - (skip+1)) : (count - skip))) {
+					pixelSizes[i]++;
+				}
+			}
+		}
+		return pixelSizes;
+	}
+
+	/**
+	 * Maps each destination pixel along one axis of a rendering to the source pixel it is copied from,
+	 * following the same rules as NinePatchBitmap renderings: the fixed start is copied, the stretchable
+	 * region is stretched (or repeated, with the shortcut method) to fill the space in between, and the
+	 * fixed end is copied last so that it wins when the rendering is smaller than the fixed regions.
+	 * 
+	 * @param length the size of the rendering along the axis
+	 * @param start the position of the stretchable region in the unstretched bitmap
+	 * @param span the size of the stretchable region
+	 * @param srcLength the size of the unstretched bitmap along the axis
+	 * @param pixelSizes the distribution of the stretchable region, or null to use the shortcut method
+	 * @return the source pixel for each destination pixel, or -1 for pixels that are not drawn
+	 */
+	private static int[] calculateStretchMap(int length, int start, int span, int srcLength, int[] pixelSizes) {
+		int end = srcLength - start - span;
+		int toFill = length - start - end;
+		int[] map = new int[length];
+
+		for (int i = 0; i < length; i++) {
+			map[i] = i < start ? i : -1;
+		}
+
+		if (toFill > 0) {
+			if (pixelSizes == null) {
+				for (int i = 0; i < toFill; i++) {
+					map[start + i] = start + (i % span);
+				}
+			} else {
+				int n = start;
+				for (int i = 0; i < pixelSizes.length; i++) {
+					for (int j = 0; j < pixelSizes[i]; j++) {
+						map[n++] = start + i;
+					}
+				}
+			}
+		}
+
+		int endStart = Math.max(0, length - end);
+		for (int i = endStart; i < length && i - endStart < end; i++) {
+			map[i] = srcLength - end + (i - endStart);
+		}
+
+		return map;
+	}
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package com.mobiata.bb.ui.decor;
+
+/**
+ * A NinePatchRenderStrategy describes how an adaptive NinePatchBitmap (see
+ * {@link NinePatchBitmap#ADAPTIVE}) draws itself at one particular size, along with the estimates
+ * behind that choice.  Costs are rough relative weights, where copying one pixel costs 1 and each
+ * call into the graphics API costs {@link #CALL_COST} on top of the pixels it copies.
+ * <p>
+ * A size is drawn directly while it is rarely used, since rendering and caching it would cost more
+ * than it saves, and is rendered and cached once it has been reused often enough for the cached
+ * copy to pay for itself.  Sizes that would take more than {@link #MAX_DIRECT_CALLS} calls to draw
+ * directly are always rendered and cached.
+ */
+public class NinePatchRenderStrategy {
+
+	/**
+	 * Strategy that renders the NinePatchBitmap at the size once, caches the rendering and draws the
+	 * cached rendering.
+	 */
+	public static final int CACHED = 1;
+
+	/**
+	 * Strategy that draws the NinePatchBitmap straight into the graphics context without rendering
+	 * it first, copying each run of consecutive source pixels with one call.  This is only chosen
+	 * when there are few runs, e.g. when the stretchable regions barely need to stretch.
+	 */
+	public static final int DIRECT = 2;
+
+	/**
+	 * Strategy that draws the NinePatchBitmap straight into the graphics context without rendering
+	 * it first, by tiling whole patches.  This is only chosen when every region that needs to stretch
+	 * is uniform enough along the stretch that tiling gives the same output as stretching.
+	 */
+	public static final int TILED = 3;
+
+	/**
+	 * The estimated cost of a single call into the graphics API, in pixels.
+	 */
+	public static final int CALL_COST = 64;
+
+	/**
+	 * The largest number of calls into the graphics API that drawing a size directly may take.
+	 */
+	public static final int MAX_DIRECT_CALLS = 32;
+
+	private int width;
+	private int height;
+	private boolean horizontalTileable;
+	private boolean verticalTileable;
+	private boolean tiled;
+	private long renderCost;
+	private long directCost;
+	private long paintCost;
+	private int uses;
+	private boolean rendered;
+	private boolean drawable;
+
+	// runs of consecutive source pixels as { destination, source, length } triples, for direct drawing,
+	// or null once the size can no longer be drawn directly
+	int[] columnRuns;
+	int[] rowRuns;
+
+	NinePatchRenderStrategy(int width, int height, boolean horizontalTileable, boolean verticalTileable,
+			boolean tiled, long renderCost, int[] columnRuns, int[] rowRuns) {
+		this.width = width;
+		this.height = height;
+		this.horizontalTileable = horizontalTileable;
+		this.verticalTileable = verticalTileable;
+		this.tiled = tiled;
+		this.renderCost = renderCost;
+
+		long pixels = (long) width * height;
+		long calls = (long) (columnRuns.length / 3) * (rowRuns.length / 3);
+		directCost = calls * CALL_COST + pixels;
+		paintCost = CALL_COST + pixels;
+
+		drawable = calls <= MAX_DIRECT_CALLS;
+		if (drawable) {
+			this.columnRuns = columnRuns;
+			this.rowRuns = rowRuns;
+		}
+	}
+
+	/**
+	 * Gets the strategy currently chosen for this size.
+	 * 
+	 * @return CACHED, DIRECT or TILED
+	 */
+	public int getStrategy() {
+		int n = Math.max(uses, 1);
+		if (rendered || !drawable || renderCost + n * paintCost <= n * directCost) {
+			return CACHED;
+		}
+		return tiled ? TILED : DIRECT;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Gets whether the horizontally stretchable region has identical columns, so that it can be
+	 * tiled rather than stretched.
+	 * 
+	 * @return true if the horizontally stretchable region can be tiled
+	 */
+	public boolean isHorizontallyTileable() {
+		return horizontalTileable;
+	}
+
+	/**
+	 * Gets whether the vertically stretchable region has identical rows, so that it can be tiled
+	 * rather than stretched.
+	 * 
+	 * @return true if the vertically stretchable region can be tiled
+	 */
+	public boolean isVerticallyTileable() {
+		return verticalTileable;
+	}
+
+	/**
+	 * Gets the estimated cost of rendering this size into a bitmap.
+	 * 
+	 * @return the estimated cost
+	 */
+	public long getRenderCost() {
+		return renderCost;
+	}
+
+	/**
+	 * Gets the estimated cost of drawing this size directly.
+	 * 
+	 * @return the estimated cost
+	 */
+	public long getDirectCost() {
+		return directCost;
+	}
+
+	/**
+	 * Gets the estimated cost of drawing a cached rendering of this size.
+	 * 
+	 * @return the estimated cost
+	 */
+	public long getPaintCost() {
+		return paintCost;
+	}
+
+	/**
+	 * Gets how many times this size has been drawn.
+	 * 
+	 * @return the number of times this size has been drawn
+	 */
+	public int getUses() {
+		return uses;
+	}
+
+	/**
+	 * Gets whether a rendering of this size has been cached.
+	 * 
+	 * @return true if a rendering of this size has been cached
+	 */
+	public boolean isRendered() {
+		return rendered;
+	}
+
+	void recordUse() {
+		uses++;
+	}
+
+	void setRendered() {
+		rendered = true;
+		columnRuns = null;
+		rowRuns = null;
+	}
+
+	public String toString() {
+		int strategy = getStrategy();
+		return width + "x" + height + ": " + (strategy == CACHED ? "CACHED" : (strategy == TILED ? "TILED" : "DIRECT"))
+				+ " (uses " + uses + ", rendered " + rendered
+				+ ", render " + renderCost + ", direct " + directCost + ", paint " + paintCost
+				+ ", tileable " + horizontalTileable + "/" + verticalTileable + ")";
+	}
+}
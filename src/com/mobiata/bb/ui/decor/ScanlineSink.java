@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package com.mobiata.bb.ui.decor;
+
+/**
+ * A ScanlineSink receives the rows of a NinePatchBitmap rendering as they are produced by
+ * {@link NinePatchBitmap#render(int, int, ScanlineSink)}, so that a rendering can be encoded or
+ * sent somewhere without ever holding the whole rendering in memory.
+ */
+public interface ScanlineSink {
+
+	/**
+	 * Receives a row of a rendering, along with the number of consecutive rows that are identical
+	 * to it.  Rows arrive in order from top to bottom.  The array is reused for the next row, so
+	 * the sink must copy out anything it wants to keep before returning.
+	 * 
+	 * @param argb the pixels of the row (0xAARRGGBB)
+	 * @param width the number of pixels in the row
+	 * @param y the index of the first row
+	 * @param count the number of consecutive rows, starting at y, that are identical to this row
+	 */
+	public void rows(int[] argb, int width, int y, int count);
+
+}
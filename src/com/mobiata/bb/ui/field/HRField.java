@@ -35,7 +35,8 @@ import net.rim.device.api.ui.Graphics;
 
 /**
  * An HRField draws a horizontal rule that extends across the entire width of its Manager
- * at a specified height and using a specified color.
+ * at a specified height and using a specified color.  To separate the children of a long
+ * list, a DividerFieldManager draws the same rules in a single pass without a field per rule.
  */
 public class HRField extends Field {
 
@@ -29,26 +29,65 @@
  */
 package com.mobiata.bb.ui.field;
 
+import net.rim.device.api.system.Bitmap;
 import net.rim.device.api.ui.Graphics;
-import net.rim.device.api.ui.XYRect;
 
 import com.mobiata.bb.ui.decor.NinePatchBitmap;
 
 /**
  * A NinePatchHRField draws a horizontal rule across the entire width of its Manager
- * at the specified height, using a NinePatchBitmap to render the rule.
+ * at the specified height, using a NinePatchBitmap to render the rule.  The rule is
+ * resolved during layout so that painting does not allocate anything.
  */
 public class NinePatchHRField extends HRField {
 
 	protected NinePatchBitmap ninePatch;
 	
+	protected boolean directDraw;
+	
+	protected Bitmap rule;
+	
+	protected Bitmap ruleCenter;
+	
 	public NinePatchHRField(NinePatchBitmap npbmp) {
+		this(npbmp, false);
+	}
+	
+	/**
+	 * Creates a NinePatchHRField.  When drawing directly, the rule is drawn from the ends
+	 * of the NinePatchBitmap and a stretched center rather than from a full-width rendering,
+	 * which keeps only the center in the cache.
+	 * 
+	 * @param npbmp the NinePatchBitmap to use for the rule
+	 * @param directDraw true to draw the rule directly, false to draw a full-width rendering
+	 */
+	public NinePatchHRField(NinePatchBitmap npbmp, boolean directDraw) {
 		super(npbmp.getBitmap().getHeight(), 0);
 		ninePatch = npbmp;
+		this.directDraw = directDraw;
+	}
+	
+	protected void layout(int width, int height) {
+		super.layout(width, height);
+		
+		rule = null;
+		ruleCenter = null;
+		if (getWidth() > 0 && getHeight() > 0) {
+			if (directDraw && ninePatch.isThreePatchRow(getHeight())) {
+				ruleCenter = ninePatch.getRowCenter(getWidth());
+			}
+			if (ruleCenter == null) {
+				rule = ninePatch.getRenderedBitmap(getWidth(), getHeight());
+			}
+		}
 	}
 	
 	protected void paint(Graphics g) {
-		ninePatch.draw(g, new XYRect(0, 0, getWidth(), getHeight()));
+		if (ruleCenter != null) {
+			ninePatch.drawRow(g, 0, 0, ruleCenter);
+		} else if (rule != null) {
+			g.drawBitmap(0, 0, getWidth(), getHeight(), rule, 0, 0);
+		}
 	}
 	
 }
@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package com.mobiata.bb.ui.manager;
+
+import net.rim.device.api.system.Bitmap;
+import net.rim.device.api.ui.Field;
+import net.rim.device.api.ui.Graphics;
+import net.rim.device.api.ui.Manager;
+
+import com.mobiata.bb.ui.decor.DividerRenderer;
+
+/**
+ * A Manager that stacks its children vertically and draws a divider between
+ * each pair of adjacent children.  Rather than adding an HRField or
+ * NinePatchHRField between every child, the dividers are positioned during
+ * layout and drawn in a single pass by a DividerRenderer while this manager
+ * paints, which avoids the layout and paint overhead of a separate field per
+ * divider in long lists.
+ * <p>
+ * With the VERTICAL_SCROLL style, children are laid out without a height limit
+ * and the manager scrolls through them.  Without it, children only get the
+ * height left over by the children above them, so a long list should either
+ * use VERTICAL_SCROLL or sit inside a manager that scrolls.  Either way, only
+ * the dividers within the visible part of the manager are drawn.
+ */
+public class DividerFieldManager extends Manager {
+    protected DividerRenderer divider;
+    protected int[] dividerPositions;
+    protected int dividerCount;
+    protected int dividerWidth;
+    protected Bitmap dividerRule;
+
+    /**
+     * Creates a DividerFieldManager.
+     * 
+     * @param divider the DividerRenderer used to draw the dividers
+     * @param style the style
+     */
+	public DividerFieldManager(DividerRenderer divider, long style) {
+		super(style);
+		this.divider = divider;
+		dividerPositions = new int[0];
+	}
+	
+	/**
+	 * Gets the DividerRenderer used by this manager.
+	 * @return the DividerRenderer used by this manager
+	 */
+	public DividerRenderer getDivider() {
+		return divider;
+	}
+
+    public int getPreferredWidth() {
+        int result = 0;
+        for (int x = 0; x < this.getFieldCount(); ++x)
+            result = Math.max(result, this.getPreferredWidthOfChild(this.getField(x)));
+        return result;
+    }
+
+    public int getPreferredHeight() {
+        int result = 0;
+        for (int x = 0; x < this.getFieldCount(); ++x)
+            result += this.getPreferredHeightOfChild(this.getField(x));
+        if (this.getFieldCount() > 1)
+            result += (this.getFieldCount() - 1) * divider.getHeight();
+        return result;
+    }
+
+	protected void sublayout(int layoutWidth, int layoutHeight) {
+        final int fieldCount = this.getFieldCount();
+        final boolean scrolling = (getStyle() & VERTICAL_SCROLL) != 0;
+        if (dividerPositions.length < fieldCount)
+            dividerPositions = new int[fieldCount];
+        dividerCount = 0;
+
+        int childWidth = 0;
+        int y = 0;
+        for (int x = 0; x < fieldCount; ++x) {
+            if (x > 0) {
+                dividerPositions[dividerCount++] = y;
+                y += divider.getHeight();
+            }
+
+            Field theField = this.getField(x);
+            this.setPositionChild(theField, 0, y);
+            this.layoutChild(theField, layoutWidth, scrolling ? Integer.MAX_VALUE >> 1 : Math.max(0, layoutHeight - y));
+            childWidth = Math.max(childWidth, theField.getWidth());
+            y += theField.getHeight();
+        }
+
+        if ((getStyle() & USE_ALL_WIDTH) == 0)
+            layoutWidth = childWidth;
+
+        if ((getStyle() & USE_ALL_HEIGHT) == 0)
+            layoutHeight = Math.min(y, layoutHeight);
+
+        this.setExtent(layoutWidth, layoutHeight);
+        if (scrolling)
+            this.setVirtualExtent(layoutWidth, Math.max(y, layoutHeight));
+
+        dividerWidth = layoutWidth;
+        dividerRule = divider.getRule(layoutWidth);
+	}
+
+	protected void subpaint(Graphics g) {
+		super.subpaint(g);
+
+		// only draw the dividers within the part of this manager that is scrolled into view,
+		// both by this manager and by the manager it sits in
+		int top = getVerticalScroll();
+		int bottom = top + getHeight();
+		Manager parent = getManager();
+		if (parent != null) {
+			int parentTop = top + parent.getVerticalScroll() - getTop();
+			top = Math.max(top, parentTop);
+			bottom = Math.min(bottom, parentTop + parent.getHeight());
+		}
+
+		int first = findDivider(top - divider.getHeight() + 1);
+		int last = findDivider(bottom);
+		divider.paint(g, 0, dividerWidth, dividerRule, dividerPositions, first, last - first);
+	}
+
+	/**
+	 * Finds the first divider at or below a position.
+	 * @param y the position
+	 * @return the index of the first divider at or below the position, or the number of dividers if there are none
+	 */
+	private int findDivider(int y) {
+		int low = 0;
+		int high = dividerCount;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (dividerPositions[mid] < y)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+}
@@ -29,12 +29,18 @@
  */
 package com.mobiata.bb.ui.manager;
 
+import java.util.Hashtable;
+
 import net.rim.device.api.ui.Field;
+import net.rim.device.api.ui.Graphics;
 import net.rim.device.api.ui.Manager;
 import net.rim.device.api.ui.XYEdges;
+import net.rim.device.api.ui.XYRect;
 
 import com.mobiata.bb.ui.decor.NinePatchBackground;
 import com.mobiata.bb.ui.decor.NinePatchBitmap;
+import com.mobiata.bb.ui.decor.NinePatchColorFilter;
+import com.mobiata.bb.ui.decor.NinePatchLayout;
 
 /**
  * A Manager that uses a NinePatchBitmap as its background and places
@@ -42,12 +48,24 @@ import com.mobiata.bb.ui.decor.NinePatchBitmap;
  * the padding set by the NinePatchBitmap.  You will probably want to 
  * put just a single child inside of this manager that is another manager
  * (e.g. a VerticalFieldManager).
+ * <p>
+ * When the visual state of the manager changes (e.g. it gains focus or is
+ * pressed), only the patches of the background that differ between the state
+ * shown on screen and the new state are repainted.  A focus background that
+ * only changes the border ring repaints the corners and edges, and a pressed
+ * (active) background that only changes the fill repaints the center.
  */
 public class NinePatchFieldManager extends Manager {
     protected int topInset;
     protected int rightInset;
     protected int bottomInset;
     protected int leftInset;
+    protected NinePatchBitmap ninePatch;
+    protected Hashtable stateNinePatches = new Hashtable();
+
+    private int paintedVisual = -1;
+    private int invalidatedVisual = -1;
+    private XYRect dirtyRect = new XYRect();
 
     /**
      * Creates a NinePatchFieldManager.
@@ -66,7 +84,9 @@ public class NinePatchFieldManager extends Manager {
 	 */
 	public void setBackground(NinePatchBackground background) {
 		super.setBackground(background);
-		setInsets(background.getNinePatch());
+		ninePatch = background.getNinePatch();
+		setInsets(ninePatch);
+		paintedVisual = -1;
 	}
 	
 	/**
@@ -76,7 +96,19 @@ public class NinePatchFieldManager extends Manager {
 	 */
 	public void setBackground(int visual, NinePatchBackground background) {
 		super.setBackground(visual, background);
+		stateNinePatches.put(new Integer(visual), background.getNinePatch());
 		setInsets(background.getNinePatch());
+		paintedVisual = -1;
+	}
+	
+	/**
+	 * Set the background to be used by this manager for a specific visual state to a color-filtered
+	 * variant of the default NinePatchBitmap of this manager (e.g. a tinted version for the focus state).
+	 * @param visual the visual state
+	 * @param filter the color filter used to derive the background from the default NinePatchBitmap
+	 */
+	public void setBackground(int visual, NinePatchColorFilter filter) {
+		setBackground(visual, new NinePatchBackground(ninePatch.getVariant(filter)));
 	}
 	
 	/**
@@ -91,6 +123,86 @@ public class NinePatchFieldManager extends Manager {
 		leftInset = padding.left;
 	}
 
+	/**
+	 * Gets the NinePatchBitmap used as the background for a specific visual state.
+	 * @param visual the visual state
+	 * @return the NinePatchBitmap for the visual state, or the default one if none was set
+	 */
+	protected NinePatchBitmap getNinePatch(int visual) {
+		NinePatchBitmap statePatch = (NinePatchBitmap) stateNinePatches.get(new Integer(visual));
+		return statePatch != null ? statePatch : ninePatch;
+	}
+	
+	protected void paint(Graphics graphics) {
+		paintedVisual = getVisualState();
+		invalidatedVisual = paintedVisual;
+		super.paint(graphics);
+	}
+	
+	/*
+	 * The RIM reference does not promise how the framework repaints a field
+	 * after changing its visual state.  When it calls invalidate(), the first
+	 * call after the state has changed is taken to be that repaint and is
+	 * narrowed down to the patches that differ from the state last painted,
+	 * which also covers several changes made before the next paint.  Any other
+	 * invalidate(), including one made before the state changes or a second
+	 * one for the same state, repaints the whole manager, as does the first one
+	 * after a background is set.  Invalidating part of the manager is never
+	 * narrowed down, so if the framework repaints some other way, the whole
+	 * manager is repainted as before.
+	 */
+	protected void invalidate() {
+		int visual = getVisualState();
+		if (visual == invalidatedVisual || paintedVisual < 0) {
+			invalidatedVisual = visual;
+			super.invalidate();
+			return;
+		}
+		invalidatedVisual = visual;
+		invalidateVisualStateChange(paintedVisual, visual);
+	}
+	
+	/**
+	 * Repaints this manager after a change of visual state.  If the old and new backgrounds share a
+	 * layout, only the patches that differ between them are invalidated, merging neighbouring patches
+	 * in the same row.  Otherwise the whole manager is invalidated.
+	 * @param priorVisual the visual state shown before the change
+	 * @param visual the visual state after the change
+	 */
+	private void invalidateVisualStateChange(int priorVisual, int visual) {
+		int mask = getNinePatch(priorVisual).getDifferingPatches(getNinePatch(visual));
+		if (mask == 0x1FF) {
+			super.invalidate();
+			return;
+		}
+
+		NinePatchLayout layout = getNinePatch(visual).getLayout();
+		int width = getWidth();
+		int height = getHeight();
+		for (int row = 0; row < 3; row++) {
+			for (int col = 0; col < 3; col++) {
+				if ((mask & (1 << (row * 3 + col))) == 0) {
+					continue;
+				}
+
+				layout.getPatchBounds(row * 3 + col, width, height, dirtyRect);
+				int x = dirtyRect.x;
+				int y = dirtyRect.y;
+				int h = dirtyRect.height;
+				int right = dirtyRect.x + dirtyRect.width;
+				while (col < 2 && (mask & (1 << (row * 3 + col + 1))) != 0) {
+					col++;
+					layout.getPatchBounds(row * 3 + col, width, height, dirtyRect);
+					right = dirtyRect.x + dirtyRect.width;
+				}
+
+				if (right > x && h > 0) {
+					invalidate(x, y, right - x, h);
+				}
+			}
+		}
+	}
+
     public int getPreferredWidth() {
         int result = 0;
         for (int x = 0; x < this.getFieldCount(); ++x)
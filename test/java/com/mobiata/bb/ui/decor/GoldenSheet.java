@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package com.mobiata.bb.ui.decor;
+
+import net.rim.device.api.system.Bitmap;
+
+/**
+ * A golden sheet holds the renderings of one asset with one set of options at every size of the
+ * test matrix, laid out side by side: the rendering at the i-th width and j-th height has its top
+ * left corner at the sum of the widths before i and the sum of the heights before j.
+ */
+final class GoldenSheet {
+
+	private int[] widths;
+	private int[] heights;
+	private Bitmap sheet;
+
+	/**
+	 * Creates an empty sheet for an asset.
+	 * 
+	 * @param width the unstretched width of the asset
+	 * @param height the unstretched height of the asset
+	 */
+	GoldenSheet(int width, int height) {
+		widths = sizes(width);
+		heights = sizes(height);
+		sheet = new Bitmap(sum(widths, widths.length), sum(heights, heights.length));
+	}
+
+	/**
+	 * Creates a sheet for an asset from a stored sheet.
+	 */
+	GoldenSheet(int width, int height, Bitmap stored) {
+		this(width, height);
+		if (stored.getWidth() != sheet.getWidth() || stored.getHeight() != sheet.getHeight()) {
+			throw new IllegalArgumentException("stored sheet is " + stored.getWidth() + "x" + stored.getHeight()
+					+ ", expected " + sheet.getWidth() + "x" + sheet.getHeight());
+		}
+		sheet = stored;
+	}
+
+	/**
+	 * The sizes along one axis: unstretched, one pixel more, and a few larger sizes that do not
+	 * divide evenly into the stretchable region.
+	 */
+	private static int[] sizes(int size) {
+		return new int[] { size, size + 1, size + 7, 2 * size + 5, 3 * size + 2 };
+	}
+
+	private static int sum(int[] values, int count) {
+		int total = 0;
+		for (int i = 0; i < count; i++) {
+			total += values[i];
+		}
+		return total;
+	}
+
+	int getWidthCount() {
+		return widths.length;
+	}
+
+	int getHeightCount() {
+		return heights.length;
+	}
+
+	int getWidth(int i) {
+		return widths[i];
+	}
+
+	int getHeight(int j) {
+		return heights[j];
+	}
+
+	Bitmap getSheet() {
+		return sheet;
+	}
+
+	Bitmap get(int i, int j) {
+		return TestImages.crop(sheet, sum(widths, i), sum(heights, j), widths[i], heights[j]);
+	}
+
+	void put(int i, int j, Bitmap rendering) {
+		int[] pixels = TestImages.pixels(rendering);
+		sheet.setARGB(pixels, 0, widths[i], sum(widths, i), sum(heights, j), widths[i], heights[j]);
+	}
+}
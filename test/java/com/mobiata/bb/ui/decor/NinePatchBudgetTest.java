@@ -0,0 +1,290 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package com.mobiata.bb.ui.decor;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import javax.imageio.ImageIO;
+
+import net.rim.device.api.system.Bitmap;
+import net.rim.device.api.ui.Field;
+import net.rim.device.api.ui.Graphics;
+import net.rim.device.api.ui.Manager;
+import net.rim.device.api.ui.XYRect;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mobiata.bb.ui.field.NinePatchHRField;
+import com.mobiata.bb.ui.manager.DividerFieldManager;
+
+/**
+ * Holds each drawing scenario to a time and allocation budget per run.  Allocations are measured
+ * for the current thread after a warm-up, so the paint paths that promise not to allocate are held
+ * to exactly that.  Time budgets are loose (about ten times what a desktop JVM needs) and only catch
+ * gross regressions, such as falling back to drawing a run at a time.
+ */
+public class NinePatchBudgetTest {
+
+	private static final int WARM_UP = 200;
+	private static final int RUNS = 1000;
+
+	private interface Scenario {
+		void run();
+	}
+
+	private Bitmap button;
+
+	@Before
+	public void setUp() throws IOException {
+		Assume.assumeTrue(allocationsMeasurable());
+		button = TestImages.read("ninepatch/button.9.png");
+	}
+
+	private static boolean allocationsMeasurable() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		return threads instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+				&& ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled();
+	}
+
+	private static long allocatedBytes() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Runs a scenario and checks its average time and allocations per run against a budget.
+	 */
+	private static void assertWithinBudget(String name, int runs, long maxMicros, long maxBytes, Scenario scenario) {
+		for (int i = 0; i < Math.min(WARM_UP, runs); i++) {
+			scenario.run();
+		}
+
+		long bytes = allocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < runs; i++) {
+			scenario.run();
+		}
+		long micros = (System.nanoTime() - start) / 1000 / runs;
+		bytes = (allocatedBytes() - bytes) / runs;
+
+		Assert.assertTrue(name + " took " + micros + "us per run, budget " + maxMicros + "us", micros <= maxMicros);
+		Assert.assertTrue(name + " allocated " + bytes + " bytes per run, budget " + maxBytes, bytes <= maxBytes);
+	}
+
+	@Test
+	public void testCachedDraw() {
+		final NinePatchBitmap npbmp = new NinePatchBitmap(button);
+		final Graphics g = new Graphics();
+		final XYRect rect = new XYRect(0, 0, 120, 40);
+
+		// only the size key is allocated once the rendering is cached
+		assertWithinBudget("cached draw", RUNS, 50, 128, new Scenario() {
+			public void run() {
+				npbmp.draw(g, rect);
+			}
+		});
+	}
+
+	@Test
+	public void testUncachedRender() {
+		final NinePatchBitmap npbmp = new NinePatchBitmap(button);
+
+		// the rendering itself is 120,000 bytes
+		assertWithinBudget("uncached 300x100 render", 50, 20000, 1000000, new Scenario() {
+			public void run() {
+				npbmp.clearCache();
+				npbmp.getRenderedBitmap(300, 100);
+			}
+		});
+	}
+
+	@Test
+	public void testStreamingRender() {
+		final NinePatchBitmap npbmp = new NinePatchBitmap(button);
+		final ScanlineSink sink = new ScanlineSink() {
+			public void rows(int[] argb, int width, int y, int count) {
+			}
+		};
+
+		// a 2000x2000 rendering would be 16,000,000 bytes; streaming only holds rows and maps
+		assertWithinBudget("streaming 2000x2000 render", 20, 10000, 100000, new Scenario() {
+			public void run() {
+				npbmp.clearCache();
+				npbmp.render(2000, 2000, sink);
+			}
+		});
+	}
+
+	@Test
+	public void testStreamingDecode() throws IOException {
+		final byte[] png = createLargeAsset(802, 602);
+
+		// the unstretched bitmap is 1,920,000 bytes; decoding only adds rows and the deflate window
+		assertWithinBudget("802x602 decode", 5, 200000, 1920000 + 200000, new Scenario() {
+			public void run() {
+				try {
+					new NinePatchBitmap(new ByteArrayInputStream(png));
+				} catch (IOException e) {
+					throw new RuntimeException(e.toString());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Encodes a nine-patch PNG with a gradient inside the border.
+	 */
+	private static byte[] createLargeAsset(int width, int height) throws IOException {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		for (int y = 1; y < height - 1; y++) {
+			for (int x = 1; x < width - 1; x++) {
+				image.setRGB(x, y, 0xFF000000 | (x & 0xFF) << 16 | (y & 0xFF) << 8 | ((x + y) & 0xFF));
+			}
+		}
+		for (int x = width / 3; x < 2 * width / 3; x++) {
+			image.setRGB(x, 0, 0xFF000000);
+			image.setRGB(x, height - 1, 0xFF000000);
+		}
+		for (int y = height / 3; y < 2 * height / 3; y++) {
+			image.setRGB(0, y, 0xFF000000);
+			image.setRGB(width - 1, y, 0xFF000000);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testAdaptiveFirstDraw() {
+		final Graphics g = new Graphics();
+		final XYRect rect = new XYRect(0, 0, 300, 100);
+
+		// a size that stretches pixel-by-pixel is rendered once rather than drawn a run at a time
+		assertWithinBudget("adaptive first 300x100 draw", 50, 20000, 1000000, new Scenario() {
+			public void run() {
+				NinePatchBitmap npbmp = new NinePatchBitmap(button, NinePatchBitmap.ADAPTIVE);
+				npbmp.clearCache();
+				npbmp.draw(g, rect);
+			}
+		});
+		Assert.assertEquals(2 * 50, g.getDrawCalls());
+	}
+
+	@Test
+	public void testRulePaint() {
+		final TestRule rule = new TestRule(new NinePatchBitmap(button), true);
+		final Graphics g = new Graphics();
+		rule.doLayout(300, 100);
+
+		assertWithinBudget("NinePatchHRField paint", RUNS, 20, 0, new Scenario() {
+			public void run() {
+				rule.doPaint(g);
+			}
+		});
+		Assert.assertEquals(3 * (WARM_UP + RUNS), g.getDrawCalls());
+	}
+
+	@Test
+	public void testDividerPaint() {
+		final TestDividers dividers = new TestDividers(new DividerRenderer(new NinePatchBitmap(button)));
+		for (int i = 0; i < 500; i++) {
+			dividers.add(new TestItem(20));
+		}
+		final Graphics g = new Graphics();
+		dividers.doLayout(320, 240);
+		dividers.setVerticalScroll(5000);
+
+		assertWithinBudget("DividerFieldManager paint of 500 children", RUNS, 500, 0, new Scenario() {
+			public void run() {
+				dividers.doPaint(g);
+			}
+		});
+
+		// only the dividers within the 240 pixels scrolled into view are drawn
+		int perPaint = g.getDrawCalls() / (WARM_UP + RUNS);
+		Assert.assertTrue("drew " + perPaint + " dividers per paint", perPaint > 0 && perPaint <= 240 / (20 + 12) + 2);
+		Assert.assertEquals(500 * 20 + 499 * 12, dividers.getVirtualHeight());
+	}
+
+	private static class TestRule extends NinePatchHRField {
+
+		TestRule(NinePatchBitmap npbmp, boolean directDraw) {
+			super(npbmp, directDraw);
+		}
+
+		void doLayout(int width, int height) {
+			layout(width, height);
+		}
+
+		void doPaint(Graphics g) {
+			paint(g);
+		}
+	}
+
+	private static class TestDividers extends DividerFieldManager {
+
+		TestDividers(DividerRenderer divider) {
+			super(divider, Manager.VERTICAL_SCROLL);
+		}
+
+		void doLayout(int width, int height) {
+			layout(width, height);
+		}
+
+		void doPaint(Graphics g) {
+			subpaint(g);
+		}
+	}
+
+	private static class TestItem extends Field {
+
+		private int height;
+
+		TestItem(int height) {
+			this.height = height;
+		}
+
+		protected void layout(int width, int height) {
+			setExtent(width, Math.min(this.height, height));
+		}
+
+		protected void paint(Graphics g) {
+		}
+	}
+}
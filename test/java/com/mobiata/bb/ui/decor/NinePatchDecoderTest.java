@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package com.mobiata.bb.ui.decor;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import net.rim.device.api.system.Bitmap;
+import net.rim.device.api.ui.XYRect;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Decodes the sample assets in test/resources/decoder with NinePatchDecoder and compares the
+ * pixels and markers against ImageIO.  Every sample holds a 12x8 image that stretches columns 4
+ * to 7 and rows 3 and 4 and pads columns 2 to 9 and rows 1 to 6, stored in a different PNG
+ * flavour.  The rows of every sample cycle through the five scanline filters and the image data
+ * is split over two IDAT chunks.
+ */
+public class NinePatchDecoderTest {
+
+	private static final String[] SAMPLES = {
+			"rgba-dynamic", // 8-bit RGBA, dynamic Huffman blocks
+			"rgba-stored", // 8-bit RGBA, stored blocks
+			"rgba16", // 16-bit RGBA
+			"gray", // 8-bit gray without alpha, fixed Huffman blocks
+			"palette-trns", // 4-bit palette with tRNS alpha
+	};
+
+	/**
+	 * Collects the rows of a 12x8 image, checking that they arrive one at a time and in order.
+	 */
+	private static class PixelSink implements ScanlineSink {
+		int[] argb = new int[12 * 8];
+		int rows;
+
+		public void rows(int[] row, int width, int y, int count) {
+			Assert.assertEquals("row", rows, y);
+			Assert.assertEquals("count", 1, count);
+			System.arraycopy(row, 0, argb, y * width, width);
+			rows++;
+		}
+	}
+
+	private static String path(String sample) {
+		return "decoder/" + sample + ".9.png";
+	}
+
+	private static NinePatchDecoder decode(String sample, ScanlineSink sink) throws IOException {
+		InputStream in = TestImages.open(path(sample));
+		try {
+			NinePatchDecoder decoder = new NinePatchDecoder(in);
+			decoder.decode(sink);
+			return decoder;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static byte[] readBytes(String sample) throws IOException {
+		InputStream in = TestImages.open(path(sample));
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a sample with ImageIO, including its border.  Gray samples are read from the raster,
+	 * as BufferedImage.getRGB() converts gray through the linear gray color space.
+	 */
+	private static Bitmap readExpected(String sample) throws IOException {
+		InputStream in = TestImages.open(path(sample));
+		BufferedImage image;
+		try {
+			image = ImageIO.read(in);
+		} finally {
+			in.close();
+		}
+		if (image.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+			return TestImages.toBitmap(image);
+		}
+		Raster raster = image.getRaster();
+		Bitmap bitmap = new Bitmap(image.getWidth(), image.getHeight());
+		int[] argb = new int[image.getWidth() * image.getHeight()];
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				argb[y * image.getWidth() + x] = 0xFF000000 | raster.getSample(x, y, 0) * 0x010101;
+			}
+		}
+		bitmap.setARGB(argb, 0, image.getWidth(), 0, 0, image.getWidth(), image.getHeight());
+		return bitmap;
+	}
+
+	/**
+	 * Gets the BTYPE of the first deflate block of a sample.
+	 */
+	private static int firstBlockType(String sample) throws IOException {
+		byte[] png = readBytes(sample);
+		for (int i = 8; i + 4 < png.length; i++) {
+			if (png[i] == 'I' && png[i + 1] == 'D' && png[i + 2] == 'A' && png[i + 3] == 'T') {
+				// skip the chunk type and the two byte zlib header
+				return (png[i + 6] >> 1) & 3;
+			}
+		}
+		throw new IOException("no IDAT in " + sample);
+	}
+
+	@Test
+	public void testSamplesCoverBlockTypes() throws IOException {
+		Assert.assertEquals("stored", 0, firstBlockType("rgba-stored"));
+		Assert.assertEquals("fixed Huffman", 1, firstBlockType("gray"));
+		Assert.assertEquals("dynamic Huffman", 2, firstBlockType("rgba-dynamic"));
+		Assert.assertEquals("dynamic Huffman", 2, firstBlockType("rgba16"));
+	}
+
+	@Test
+	public void testDecode() throws IOException {
+		for (int s = 0; s < SAMPLES.length; s++) {
+			PixelSink sink = new PixelSink();
+			NinePatchDecoder decoder = decode(SAMPLES[s], sink);
+			Bitmap expected = readExpected(SAMPLES[s]);
+
+			Assert.assertEquals(SAMPLES[s] + " width", 12, decoder.getWidth());
+			Assert.assertEquals(SAMPLES[s] + " height", 8, decoder.getHeight());
+			Assert.assertEquals(SAMPLES[s] + " rows", 8, sink.rows);
+			Assert.assertArrayEquals(SAMPLES[s] + " pixels", TestImages.pixels(TestImages.crop(expected, 1, 1, 12, 8)),
+					sink.argb);
+
+			Assert.assertEquals(SAMPLES[s] + " stretch x", 4, decoder.getStretchX());
+			Assert.assertEquals(SAMPLES[s] + " stretch y", 3, decoder.getStretchY());
+			Assert.assertEquals(SAMPLES[s] + " stretch width", 4, decoder.getStretchWidth());
+			Assert.assertEquals(SAMPLES[s] + " stretch height", 2, decoder.getStretchHeight());
+			Assert.assertEquals(SAMPLES[s] + " pad x", 2, decoder.getPadX());
+			Assert.assertEquals(SAMPLES[s] + " pad y", 1, decoder.getPadY());
+			Assert.assertEquals(SAMPLES[s] + " pad width", 8, decoder.getPadWidth());
+			Assert.assertEquals(SAMPLES[s] + " pad height", 6, decoder.getPadHeight());
+		}
+	}
+
+	@Test
+	public void testDecodedMatchesBitmap() throws IOException {
+		for (int s = 0; s < SAMPLES.length; s++) {
+			NinePatchBitmap fromBitmap = new NinePatchBitmap(readExpected(SAMPLES[s]));
+			InputStream in = TestImages.open(path(SAMPLES[s]));
+			NinePatchBitmap decoded;
+			try {
+				decoded = new NinePatchBitmap(in);
+			} finally {
+				in.close();
+			}
+			XYRect expectedPad = fromBitmap.getPadRect();
+			XYRect pad = decoded.getPadRect();
+			Assert.assertEquals(SAMPLES[s] + " pad x", expectedPad.x, pad.x);
+			Assert.assertEquals(SAMPLES[s] + " pad y", expectedPad.y, pad.y);
+			Assert.assertEquals(SAMPLES[s] + " pad width", expectedPad.width, pad.width);
+			Assert.assertEquals(SAMPLES[s] + " pad height", expectedPad.height, pad.height);
+			TestImages.assertSameBitmap(SAMPLES[s] + " rendering", fromBitmap.getRenderedBitmap(31, 17),
+					decoded.getRenderedBitmap(31, 17));
+		}
+	}
+
+	@Test
+	public void testReadsInBlocks() throws IOException {
+		byte[] png = readBytes("rgba-dynamic");
+		byte[] trailing = new byte[png.length + 16];
+		System.arraycopy(png, 0, trailing, 0, png.length);
+
+		// count the reads made on an unbuffered stream, with data after the end of the PNG
+		final int[] reads = new int[2];
+		InputStream in = new ByteArrayInputStream(trailing) {
+			public synchronized int read() {
+				reads[0]++;
+				return super.read();
+			}
+
+			public synchronized int read(byte[] b, int off, int len) {
+				reads[1]++;
+				return super.read(b, off, len);
+			}
+		};
+		new NinePatchDecoder(in).decode(new PixelSink());
+
+		Assert.assertEquals("single byte reads", 0, reads[0]);
+		Assert.assertTrue("made " + reads[1] + " reads", reads[1] <= 30);
+		Assert.assertEquals("bytes left after the PNG", 16, in.available());
+	}
+
+	@Test
+	public void testTruncated() throws IOException {
+		InputStream in = TestImages.open(path("truncated"));
+		try {
+			new NinePatchDecoder(in).decode(new PixelSink());
+			Assert.fail("decoded a truncated stream");
+		} catch (IOException e) {
+			// expected
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void testSharedRenderings() throws IOException {
+		NinePatchBitmap[] npbmps = new NinePatchBitmap[3];
+		String[] names = { path("rgba-dynamic"), path("rgba-dynamic"), null };
+		for (int i = 0; i < npbmps.length; i++) {
+			InputStream in = TestImages.open(path("rgba-dynamic"));
+			try {
+				npbmps[i] = new NinePatchBitmap(in, 0, names[i]);
+			} finally {
+				in.close();
+			}
+		}
+		Bitmap shared = npbmps[0].getRenderedBitmap(20, 20);
+		Assert.assertSame("same asset name", shared, npbmps[1].getRenderedBitmap(20, 20));
+		Assert.assertNotSame("no asset name", shared, npbmps[2].getRenderedBitmap(20, 20));
+
+		npbmps[0].clearCache();
+		Assert.assertNotSame("after clearing", shared, npbmps[1].getRenderedBitmap(20, 20));
+	}
+}
@@ -0,0 +1,276 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package com.mobiata.bb.ui.decor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import net.rim.device.api.system.Bitmap;
+import net.rim.device.api.ui.Graphics;
+import net.rim.device.api.ui.XYRect;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares renderings of the test assets against stored golden sheets (see {@link GoldenSheet})
+ * across a matrix of sizes and options, through every way of producing them.  Besides the two
+ * hand-drawn assets, the corpus covers the cases the pixel distribution is most likely to get wrong:
+ * a stretch region starting at the first or ending at the last pixel, one-pixel stretch regions,
+ * assets that only stretch along one axis, translucent pixels, and a few assets with random geometry.
+ * <p>
+ * The sheets of unscaled assets in test/resources/golden were rendered independently of this code,
+ * with the original pixel-by-pixel algorithm.  The sheets of scaled assets record the output of the
+ * resampler at the time they were written and only guard against unintended changes.  Run with
+ * -Dgolden.update=true to write new sheets from the current renderer after an intended change.
+ */
+public class NinePatchGoldenTest {
+
+	private static final String[] ASSETS = { "button", "tiles", "rule", "column", "edge-start", "edge-end", "thin",
+			"random-0", "random-1", "random-2" };
+
+	private static final int[] OPTIONS = { 0, NinePatchBitmap.H_SHORTCUT, NinePatchBitmap.V_SHORTCUT,
+			NinePatchBitmap.H_SHORTCUT | NinePatchBitmap.V_SHORTCUT };
+
+	private static final int[] SCALED_OPTIONS = { 0, NinePatchBitmap.H_SHORTCUT | NinePatchBitmap.V_SHORTCUT };
+
+	private static final int[] SCALES = { 0xC000, 0x18000 };
+
+	// both leave transparent black unchanged, as the renderer leaves the area beyond a fixed axis
+	private static final NinePatchColorFilter[] FILTERS = { NinePatchColorFilter.multiply(0xC0FF8040),
+			NinePatchColorFilter.alpha(0x80) };
+
+	private static Bitmap readAsset(String asset) throws IOException {
+		return TestImages.read("ninepatch/" + asset + ".9.png");
+	}
+
+	private static GoldenSheet readGolden(String asset, int options, Bitmap raw) throws IOException {
+		return readGolden("golden/" + asset + "-" + options + ".png", new NinePatchBitmap(raw, options));
+	}
+
+	private static GoldenSheet readScaledGolden(String asset, int options, int scale, Bitmap raw) throws IOException {
+		return readGolden("golden/" + asset + "-" + options + "-x" + Integer.toHexString(scale) + ".png",
+				new NinePatchBitmap(raw, options).getScaled(scale));
+	}
+
+	/**
+	 * Reads a golden sheet for a NinePatchBitmap, or renders and writes it in update mode.
+	 */
+	private static GoldenSheet readGolden(String path, NinePatchBitmap npbmp) throws IOException {
+		Bitmap bitmap = npbmp.getBitmap();
+		if (Boolean.getBoolean("golden.update")) {
+			GoldenSheet sheet = new GoldenSheet(bitmap.getWidth(), bitmap.getHeight());
+			for (int i = 0; i < sheet.getWidthCount(); i++) {
+				for (int j = 0; j < sheet.getHeightCount(); j++) {
+					sheet.put(i, j, npbmp.getRenderedBitmap(sheet.getWidth(i), sheet.getHeight(j)));
+				}
+			}
+			TestImages.write(sheet.getSheet(), new File("test/resources/" + path));
+			return sheet;
+		}
+		return new GoldenSheet(bitmap.getWidth(), bitmap.getHeight(), TestImages.read(path));
+	}
+
+	/**
+	 * Applies a color filter to every rendering of a golden sheet.
+	 */
+	private static GoldenSheet filter(GoldenSheet golden, NinePatchColorFilter filter) {
+		Bitmap sheet = golden.getSheet();
+		int[] pixels = TestImages.pixels(sheet);
+		filter.filter(pixels, 0, pixels.length);
+		Bitmap filtered = new Bitmap(sheet.getWidth(), sheet.getHeight());
+		filtered.setARGB(pixels, 0, sheet.getWidth(), 0, 0, sheet.getWidth(), sheet.getHeight());
+		return new GoldenSheet(golden.getWidth(0), golden.getHeight(0), filtered);
+	}
+
+	private static String describe(String asset, int options, GoldenSheet sheet, int i, int j) {
+		return asset + " options " + options + " at " + sheet.getWidth(i) + "x" + sheet.getHeight(j);
+	}
+
+	/**
+	 * Checks every rendering of a golden sheet against NinePatchBitmap.getRenderedBitmap().
+	 */
+	private static void assertRenderedBitmaps(String name, GoldenSheet golden, NinePatchBitmap npbmp) {
+		for (int i = 0; i < golden.getWidthCount(); i++) {
+			for (int j = 0; j < golden.getHeightCount(); j++) {
+				TestImages.assertSameBitmap(name + " at " + golden.getWidth(i) + "x" + golden.getHeight(j), golden.get(i, j),
+						npbmp.getRenderedBitmap(golden.getWidth(i), golden.getHeight(j)));
+			}
+		}
+	}
+
+	/**
+	 * Checks every rendering of a golden sheet against NinePatchBitmap.draw(), drawing each size a few
+	 * times so that adaptive strategies are checked both before and after they settle.
+	 */
+	private static void assertDrawn(String name, GoldenSheet golden, NinePatchBitmap npbmp) {
+		for (int i = 0; i < golden.getWidthCount(); i++) {
+			for (int j = 0; j < golden.getHeightCount(); j++) {
+				for (int use = 0; use < 3; use++) {
+					Bitmap out = new Bitmap(golden.getWidth(i), golden.getHeight(j));
+					Graphics g = new Graphics(out);
+					npbmp.draw(g, new XYRect(0, 0, out.getWidth(), out.getHeight()));
+					TestImages.assertSameBitmap(name + " draw " + use + " at " + golden.getWidth(i) + "x" + golden.getHeight(j),
+							golden.get(i, j), out);
+					Assert.assertTrue(g.getDrawCalls() <= NinePatchRenderStrategy.MAX_DIRECT_CALLS);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRenderedBitmap() throws IOException {
+		for (int a = 0; a < ASSETS.length; a++) {
+			Bitmap raw = readAsset(ASSETS[a]);
+			for (int o = 0; o < OPTIONS.length; o++) {
+				GoldenSheet golden = readGolden(ASSETS[a], OPTIONS[o], raw);
+				assertRenderedBitmaps(ASSETS[a] + " options " + OPTIONS[o], golden, new NinePatchBitmap(raw, OPTIONS[o]));
+
+				// adaptive tiling only kicks in where it gives the same output as stretching
+				int adaptive = OPTIONS[o] | NinePatchBitmap.ADAPTIVE;
+				assertRenderedBitmaps(ASSETS[a] + " options " + adaptive, golden, new NinePatchBitmap(raw, adaptive));
+			}
+		}
+	}
+
+	@Test
+	public void testDecodedRenderedBitmap() throws IOException {
+		for (int a = 0; a < ASSETS.length; a++) {
+			Bitmap raw = readAsset(ASSETS[a]);
+			for (int o = 0; o < OPTIONS.length; o++) {
+				GoldenSheet golden = readGolden(ASSETS[a], OPTIONS[o], raw);
+				InputStream in = TestImages.open("ninepatch/" + ASSETS[a] + ".9.png");
+				NinePatchBitmap npbmp;
+				try {
+					npbmp = new NinePatchBitmap(in, OPTIONS[o]);
+				} finally {
+					in.close();
+				}
+				assertRenderedBitmaps("decoded " + ASSETS[a] + " options " + OPTIONS[o], golden, npbmp);
+			}
+		}
+	}
+
+	@Test
+	public void testScanlineRender() throws IOException {
+		for (int a = 0; a < ASSETS.length; a++) {
+			Bitmap raw = readAsset(ASSETS[a]);
+			for (int o = 0; o < OPTIONS.length; o++) {
+				GoldenSheet golden = readGolden(ASSETS[a], OPTIONS[o], raw);
+				NinePatchBitmap npbmp = new NinePatchBitmap(raw, OPTIONS[o]);
+				for (int i = 0; i < golden.getWidthCount(); i++) {
+					for (int j = 0; j < golden.getHeightCount(); j++) {
+						final Bitmap out = new Bitmap(golden.getWidth(i), golden.getHeight(j));
+						npbmp.render(out.getWidth(), out.getHeight(), new ScanlineSink() {
+							public void rows(int[] argb, int width, int y, int count) {
+								for (int k = 0; k < count; k++) {
+									out.setARGB(argb, 0, width, 0, y + k, width, 1);
+								}
+							}
+						});
+						TestImages.assertSameBitmap("streamed " + describe(ASSETS[a], OPTIONS[o], golden, i, j), golden.get(i, j), out);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testAdaptiveDraw() throws IOException {
+		for (int a = 0; a < ASSETS.length; a++) {
+			Bitmap raw = readAsset(ASSETS[a]);
+			for (int o = 0; o < OPTIONS.length; o++) {
+				GoldenSheet golden = readGolden(ASSETS[a], OPTIONS[o], raw);
+				int options = OPTIONS[o] | NinePatchBitmap.ADAPTIVE;
+				assertDrawn(ASSETS[a] + " options " + options, golden, new NinePatchBitmap(raw, options));
+			}
+		}
+	}
+
+	@Test
+	public void testVariant() throws IOException {
+		for (int a = 0; a < ASSETS.length; a++) {
+			Bitmap raw = readAsset(ASSETS[a]);
+			for (int o = 0; o < OPTIONS.length; o++) {
+				GoldenSheet golden = readGolden(ASSETS[a], OPTIONS[o], raw);
+				for (int f = 0; f < FILTERS.length; f++) {
+					GoldenSheet filtered = filter(golden, FILTERS[f]);
+					String name = ASSETS[a] + " options " + OPTIONS[o] + " filter " + f;
+					assertRenderedBitmaps(name, filtered, new NinePatchBitmap(raw, OPTIONS[o]).getVariant(FILTERS[f]));
+					assertDrawn("adaptive " + name, filtered,
+							new NinePatchBitmap(raw, OPTIONS[o] | NinePatchBitmap.ADAPTIVE).getVariant(FILTERS[f]));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testScaled() throws IOException {
+		for (int a = 0; a < ASSETS.length; a++) {
+			Bitmap raw = readAsset(ASSETS[a]);
+			for (int o = 0; o < SCALED_OPTIONS.length; o++) {
+				for (int s = 0; s < SCALES.length; s++) {
+					GoldenSheet golden = readScaledGolden(ASSETS[a], SCALED_OPTIONS[o], SCALES[s], raw);
+					String name = ASSETS[a] + " options " + SCALED_OPTIONS[o] + " scaled by 0x" + Integer.toHexString(SCALES[s]);
+					assertRenderedBitmaps(name, golden, new NinePatchBitmap(raw, SCALED_OPTIONS[o]).getScaled(SCALES[s]));
+					assertDrawn("adaptive " + name, golden,
+							new NinePatchBitmap(raw, SCALED_OPTIONS[o] | NinePatchBitmap.ADAPTIVE).getScaled(SCALES[s]));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFixedAxis() throws IOException {
+		Bitmap raw = readAsset("rule");
+		NinePatchBitmap npbmp = new NinePatchBitmap(raw);
+		Bitmap bitmap = npbmp.getBitmap();
+		Assert.assertTrue(npbmp.isThreePatchRow(bitmap.getHeight()));
+		Assert.assertFalse(npbmp.isThreePatchColumn(bitmap.getWidth()));
+
+		// the ends are copied and the stretch region (columns 3 to 6) fills the middle
+		Bitmap row = npbmp.getRenderedBitmap(25, bitmap.getHeight());
+		TestImages.assertSameBitmap("left end", TestImages.crop(bitmap, 0, 0, 3, 4), TestImages.crop(row, 0, 0, 3, 4));
+		TestImages.assertSameBitmap("right end", TestImages.crop(bitmap, 7, 0, 3, 4), TestImages.crop(row, 22, 0, 3, 4));
+
+		// the fixed axis keeps its unstretched height, at the top
+		Bitmap tall = npbmp.getRenderedBitmap(25, 9);
+		TestImages.assertSameBitmap("top of tall rendering", row, TestImages.crop(tall, 0, 0, 25, 4));
+		int[] below = TestImages.pixels(TestImages.crop(tall, 0, 4, 25, 5));
+		for (int i = 0; i < below.length; i++) {
+			Assert.assertEquals("below the rule", 0, below[i]);
+		}
+
+		Bitmap out = new Bitmap(25, 9);
+		npbmp.draw(new Graphics(out), new XYRect(0, 0, 25, 9));
+		TestImages.assertSameBitmap("drawn into a taller rectangle", tall, out);
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package com.mobiata.bb.ui.decor;
+
+import java.io.IOException;
+
+import net.rim.device.api.system.Bitmap;
+import net.rim.device.api.ui.XYRect;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that interned layouts and their cached distributions can be released.
+ */
+public class NinePatchLayoutTest {
+
+	@Test
+	public void testClearCaches() {
+		XYRect stretch = new XYRect(2, 1, 3, 2);
+		XYRect pad = new XYRect(1, 1, 5, 2);
+		NinePatchLayout layout = NinePatchLayout.getLayout(7, 4, stretch, pad);
+		Assert.assertSame(layout, NinePatchLayout.getLayout(7, 4, stretch, pad));
+		int[] widths = layout.getPixelWidths(40);
+		Assert.assertSame(widths, layout.getPixelWidths(40));
+
+		NinePatchBitmap.clearCaches();
+
+		// the distributions are dropped, but calculated the same way again
+		int[] recalculated = layout.getPixelWidths(40);
+		Assert.assertNotSame(widths, recalculated);
+		Assert.assertArrayEquals(widths, recalculated);
+
+		// the layout is no longer interned, so equal geometries share a new one
+		NinePatchLayout fresh = NinePatchLayout.getLayout(7, 4, stretch, pad);
+		Assert.assertNotSame(layout, fresh);
+		Assert.assertEquals(layout, fresh);
+		Assert.assertSame(fresh, NinePatchLayout.getLayout(7, 4, stretch, pad));
+	}
+
+	@Test
+	public void testDifferingPatchesAcrossClear() throws IOException {
+		Bitmap raw = TestImages.read("ninepatch/button.9.png");
+		NinePatchBitmap before = new NinePatchBitmap(raw);
+		Bitmap rendered = before.getRenderedBitmap(60, 30);
+
+		NinePatchBitmap.clearCaches();
+
+		// a layout interned before clearing still compares equal to one interned after
+		NinePatchBitmap after = new NinePatchBitmap(raw);
+		Assert.assertNotSame(before.getLayout(), after.getLayout());
+		Assert.assertEquals(0, before.getDifferingPatches(after));
+		TestImages.assertSameBitmap("rendering after clearing", rendered, before.getRenderedBitmap(60, 30));
+	}
+}
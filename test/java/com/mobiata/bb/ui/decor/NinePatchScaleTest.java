@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package com.mobiata.bb.ui.decor;
+
+import java.io.IOException;
+
+import net.rim.device.api.system.Bitmap;
+import net.rim.device.api.ui.XYEdges;
+import net.rim.device.api.ui.XYRect;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that scaled NinePatchBitmaps keep a usable geometry however far they are scaled down.
+ */
+public class NinePatchScaleTest {
+
+	private static final String[] ASSETS = { "button", "tiles", "rule" };
+
+	private static final int[] SCALES = { 0x100, 0x1000, 0x4000, 0x8000, 0xC000, 0x18000, 0x30000 };
+
+	@Test
+	public void testGeometry() throws IOException {
+		for (int a = 0; a < ASSETS.length; a++) {
+			NinePatchBitmap npbmp = new NinePatchBitmap(TestImages.read("ninepatch/" + ASSETS[a] + ".9.png"));
+			for (int s = 0; s < SCALES.length; s++) {
+				String name = ASSETS[a] + " scaled by 0x" + Integer.toHexString(SCALES[s]);
+				NinePatchBitmap scaled = npbmp.getScaled(SCALES[s]);
+				Bitmap bitmap = scaled.getBitmap();
+				Assert.assertTrue(name + " width", bitmap.getWidth() >= 1);
+				Assert.assertTrue(name + " height", bitmap.getHeight() >= 1);
+
+				XYEdges padding = scaled.getPadding();
+				Assert.assertTrue(name + " padding", padding.left >= 0 && padding.top >= 0 && padding.right >= 0 && padding.bottom >= 0);
+
+				XYRect stretch = scaled.getLayout().getStretchRect();
+				XYRect source = npbmp.getLayout().getStretchRect();
+				Assert.assertEquals(name + " stretches horizontally", source.width > 0, stretch.width > 0);
+				Assert.assertEquals(name + " stretches vertically", source.height > 0, stretch.height > 0);
+				Assert.assertTrue(name + " stretch rectangle", stretch.x + stretch.width <= bitmap.getWidth()
+						&& stretch.y + stretch.height <= bitmap.getHeight());
+
+				Bitmap rendered = scaled.getRenderedBitmap(40, bitmap.getHeight());
+				Assert.assertEquals(name + " rendering", 40, rendered.getWidth());
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testZeroDensity() throws IOException {
+		new NinePatchBitmap(TestImages.read("ninepatch/button.9.png")).getScaled(0, 160);
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package com.mobiata.bb.ui.decor;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import net.rim.device.api.system.Bitmap;
+
+import org.junit.Assert;
+
+/**
+ * Helpers for loading test images and comparing bitmaps.  Test images are read with ImageIO,
+ * independently of NinePatchDecoder.
+ */
+final class TestImages {
+
+	private TestImages() {
+	}
+
+	/**
+	 * Opens a test resource.
+	 * 
+	 * @param path the path of the resource, relative to test/resources
+	 * @return the stream
+	 */
+	static InputStream open(String path) throws IOException {
+		InputStream in = TestImages.class.getResourceAsStream("/" + path);
+		if (in == null) {
+			throw new IOException("missing test resource " + path);
+		}
+		return in;
+	}
+
+	/**
+	 * Reads a test image into a Bitmap.
+	 * 
+	 * @param path the path of the image, relative to test/resources
+	 * @return the bitmap
+	 */
+	static Bitmap read(String path) throws IOException {
+		InputStream in = open(path);
+		try {
+			return toBitmap(ImageIO.read(in));
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes a Bitmap as a PNG.
+	 * 
+	 * @param bitmap the bitmap
+	 * @param file the file to write
+	 */
+	static void write(Bitmap bitmap, File file) throws IOException {
+		file.getParentFile().mkdirs();
+		if (!ImageIO.write(toImage(bitmap), "png", file)) {
+			throw new IOException("no PNG writer");
+		}
+	}
+
+	static Bitmap toBitmap(BufferedImage image) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+		Bitmap bitmap = new Bitmap(width, height);
+		bitmap.setARGB(pixels, 0, width, 0, 0, width, height);
+		return bitmap;
+	}
+
+	static BufferedImage toImage(Bitmap bitmap) {
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(0, 0, width, height, pixels(bitmap), 0, width);
+		return image;
+	}
+
+	static int[] pixels(Bitmap bitmap) {
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		int[] pixels = new int[width * height];
+		bitmap.getARGB(pixels, 0, width, 0, 0, width, height);
+		return pixels;
+	}
+
+	/**
+	 * Copies a region of a bitmap.
+	 */
+	static Bitmap crop(Bitmap bitmap, int x, int y, int width, int height) {
+		int[] pixels = new int[width * height];
+		bitmap.getARGB(pixels, 0, width, x, y, width, height);
+		Bitmap crop = new Bitmap(width, height);
+		crop.setARGB(pixels, 0, width, 0, 0, width, height);
+		return crop;
+	}
+
+	/**
+	 * Asserts that two bitmaps have the same size and pixels, reporting the first pixel that differs.
+	 */
+	static void assertSameBitmap(String message, Bitmap expected, Bitmap actual) {
+		Assert.assertEquals(message + ": width", expected.getWidth(), actual.getWidth());
+		Assert.assertEquals(message + ": height", expected.getHeight(), actual.getHeight());
+
+		int[] e = pixels(expected);
+		int[] a = pixels(actual);
+		for (int i = 0; i < e.length; i++) {
+			if (e[i] != a[i]) {
+				Assert.fail(message + ": pixel " + (i % expected.getWidth()) + "," + (i / expected.getWidth())
+						+ " expected " + Integer.toHexString(e[i]) + " but was " + Integer.toHexString(a[i]));
+			}
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package com.mobiata.bb.ui.manager;
+
+import java.util.Vector;
+
+import net.rim.device.api.system.Bitmap;
+import net.rim.device.api.ui.Field;
+import net.rim.device.api.ui.Graphics;
+import net.rim.device.api.ui.Manager;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mobiata.bb.ui.decor.NinePatchBackground;
+import com.mobiata.bb.ui.decor.NinePatchBitmap;
+
+/**
+ * Records the regions a NinePatchFieldManager invalidates when its visual state changes.  The
+ * backgrounds are 8x8 with 2px fixed patches, so at 60x40 the corners and edges are 2px wide and
+ * the center runs from (2, 2) to (58, 38).
+ */
+public class NinePatchFieldManagerTest {
+
+	private static final int RING = 0xFF336699;
+	private static final int FOCUS_RING = 0xFFFF9900;
+	private static final int FILL = 0xFFEEEEEE;
+	private static final int PRESSED_FILL = 0xFF999999;
+
+	private static final int[] TOP = { 0, 0, 60, 2 };
+	private static final int[] LEFT = { 0, 2, 2, 36 };
+	private static final int[] RIGHT = { 58, 2, 2, 36 };
+	private static final int[] BOTTOM = { 0, 38, 60, 2 };
+	private static final int[] CENTER = { 2, 2, 56, 36 };
+	private static final int[] ALL = { 0, 0, 60, 40 };
+
+	private static class RecordingManager extends NinePatchFieldManager {
+		Vector invalidated = new Vector();
+
+		RecordingManager(NinePatchBitmap bitmap) {
+			super(bitmap, USE_ALL_WIDTH | USE_ALL_HEIGHT);
+			layout(60, 40);
+			paint(new Graphics());
+		}
+
+		protected void invalidate(int x, int y, int width, int height) {
+			invalidated.addElement(new int[] { x, y, width, height });
+			super.invalidate(x, y, width, height);
+		}
+
+		void focus() {
+			onFocus(1);
+		}
+
+		void unfocus() {
+			onUnfocus();
+		}
+
+		void press() {
+			navigationClick(0, 0);
+		}
+
+		void release() {
+			navigationUnclick(0, 0);
+		}
+
+		/**
+		 * Paints the manager and gets the regions invalidated since the last paint.
+		 */
+		int[][] repaint() {
+			int[][] regions = new int[invalidated.size()][];
+			invalidated.copyInto(regions);
+			invalidated.removeAllElements();
+			paint(new Graphics());
+			return regions;
+		}
+	}
+
+	/**
+	 * Creates a background with a ring around a fill, with the fixed patches in the ring.
+	 */
+	private static NinePatchBitmap createBackground(int ring, int fill, int options) {
+		int[] argb = new int[10 * 10];
+		for (int y = 0; y < 10; y++) {
+			for (int x = 0; x < 10; x++) {
+				boolean marker = (y == 0 || y == 9) && x >= 3 && x <= 6 || (x == 0 || x == 9) && y >= 3 && y <= 6;
+				if (x == 0 || y == 0 || x == 9 || y == 9) {
+					argb[y * 10 + x] = marker ? 0xFF000000 : 0;
+				} else {
+					argb[y * 10 + x] = x >= 3 && x <= 6 && y >= 3 && y <= 6 ? fill : ring;
+				}
+			}
+		}
+		Bitmap raw = new Bitmap(10, 10);
+		raw.setARGB(argb, 0, 10, 0, 0, 10, 10);
+		return new NinePatchBitmap(raw, options);
+	}
+
+	private static void assertRegions(String message, int[][] expected, int[][] actual) {
+		Assert.assertEquals(message + " count", expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			Assert.assertArrayEquals(message + " region " + i, expected[i], actual[i]);
+		}
+	}
+
+	@Test
+	public void testFocusRing() {
+		RecordingManager manager = new RecordingManager(createBackground(RING, FILL, 0));
+		manager.setBackground(Field.VISUAL_STATE_FOCUS, new NinePatchBackground(createBackground(FOCUS_RING, FILL, 0)));
+		manager.repaint();
+
+		manager.focus();
+		assertRegions("focus", new int[][] { TOP, LEFT, RIGHT, BOTTOM }, manager.repaint());
+		manager.unfocus();
+		assertRegions("unfocus", new int[][] { TOP, LEFT, RIGHT, BOTTOM }, manager.repaint());
+	}
+
+	@Test
+	public void testPressedFill() {
+		RecordingManager manager = new RecordingManager(createBackground(RING, FILL, 0));
+		manager.setBackground(Field.VISUAL_STATE_FOCUS, new NinePatchBackground(createBackground(FOCUS_RING, FILL, 0)));
+		manager.setBackground(Field.VISUAL_STATE_ACTIVE, new NinePatchBackground(createBackground(FOCUS_RING, PRESSED_FILL, 0)));
+		manager.repaint();
+		manager.focus();
+		manager.repaint();
+
+		manager.press();
+		assertRegions("press", new int[][] { CENTER }, manager.repaint());
+		manager.release();
+		assertRegions("release", new int[][] { CENTER }, manager.repaint());
+	}
+
+	@Test
+	public void testIdenticalPair() {
+		RecordingManager manager = new RecordingManager(createBackground(RING, FILL, 0));
+		manager.setBackground(Field.VISUAL_STATE_FOCUS, new NinePatchBackground(createBackground(RING, FILL, 0)));
+		manager.repaint();
+
+		manager.focus();
+		assertRegions("focus", new int[0][], manager.repaint());
+	}
+
+	@Test
+	public void testDifferentOptions() {
+		RecordingManager manager = new RecordingManager(createBackground(RING, FILL, 0));
+		manager.setBackground(Field.VISUAL_STATE_FOCUS,
+				new NinePatchBackground(createBackground(RING, FILL, NinePatchBitmap.H_SHORTCUT)));
+		manager.repaint();
+
+		manager.focus();
+		assertRegions("focus", new int[][] { ALL }, manager.repaint());
+	}
+
+	@Test
+	public void testOtherInvalidates() {
+		RecordingManager manager = new RecordingManager(createBackground(RING, FILL, 0));
+		manager.setBackground(Field.VISUAL_STATE_FOCUS, new NinePatchBackground(createBackground(FOCUS_RING, FILL, 0)));
+
+		// the first repaint after setting a background is not narrowed down
+		manager.focus();
+		assertRegions("after setting a background", new int[][] { ALL }, manager.repaint());
+
+		// nor is a second invalidate for the same change
+		manager.unfocus();
+		manager.invalidate();
+		assertRegions("second invalidate", new int[][] { TOP, LEFT, RIGHT, BOTTOM, ALL }, manager.repaint());
+
+		// changes made before the next paint are compared with the state last painted
+		manager.focus();
+		manager.unfocus();
+		assertRegions("focus and unfocus", new int[][] { TOP, LEFT, RIGHT, BOTTOM }, manager.repaint());
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package net.rim.device.api.system;
+
+/**
+ * Desktop stand-in for the RIM Bitmap, holding its pixels in an int array.
+ */
+public class Bitmap {
+
+	private int width;
+	private int height;
+	private int[] pixels;
+
+	public Bitmap(int width, int height) {
+		if (width < 0 || height < 0) {
+			throw new IllegalArgumentException("negative size " + width + "x" + height);
+		}
+		this.width = width;
+		this.height = height;
+		pixels = new int[width * height];
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public boolean hasAlpha() {
+		return true;
+	}
+
+	public void getARGB(int[] argbData, int offset, int scanLength, int x, int y, int width, int height) {
+		checkBounds(x, y, width, height);
+		for (int row = 0; row < height; row++) {
+			System.arraycopy(pixels, (y + row) * this.width + x, argbData, offset + row * scanLength, width);
+		}
+	}
+
+	public void setARGB(int[] data, int offset, int scanLength, int left, int top, int width, int height) {
+		checkBounds(left, top, width, height);
+		for (int row = 0; row < height; row++) {
+			System.arraycopy(data, offset + row * scanLength, pixels, (top + row) * this.width + left, width);
+		}
+	}
+
+	private void checkBounds(int x, int y, int width, int height) {
+		if (x < 0 || y < 0 || width < 0 || height < 0 || x + width > this.width || y + height > this.height) {
+			throw new IllegalArgumentException("rectangle " + x + "," + y + " " + width + "x" + height
+					+ " outside of " + this.width + "x" + this.height + " bitmap");
+		}
+	}
+}
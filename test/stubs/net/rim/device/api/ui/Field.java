@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package net.rim.device.api.ui;
+
+import java.util.Hashtable;
+
+import net.rim.device.api.ui.decor.Background;
+
+/**
+ * Desktop stand-in for the RIM Field, keeping track of its extent, position, manager, visual
+ * state and backgrounds.  The visual state changes through focus and through clicking, which
+ * makes the field active until it is released, and each change calls invalidate().
+ */
+public abstract class Field {
+
+	public static final long FOCUSABLE = 0x0000000000400000L;
+	public static final long USE_ALL_WIDTH = 0x0000000400000000L;
+	public static final long USE_ALL_HEIGHT = 0x0000000800000000L;
+
+	public static final int VISUAL_STATE_NORMAL = 0;
+	public static final int VISUAL_STATE_FOCUS = 1;
+	public static final int VISUAL_STATE_ACTIVE = 2;
+	public static final int VISUAL_STATE_DISABLED = 3;
+	public static final int VISUAL_STATE_DISABLED_FOCUS = 4;
+
+	private long style;
+	private int width;
+	private int height;
+	private int left;
+	private int top;
+	private int visualState;
+	private Manager manager;
+	private Background background;
+	private Hashtable stateBackgrounds = new Hashtable();
+
+	public Field() {
+		this(0);
+	}
+
+	public Field(long style) {
+		this.style = style;
+	}
+
+	public long getStyle() {
+		return style;
+	}
+
+	public int getPreferredWidth() {
+		return 0;
+	}
+
+	public int getPreferredHeight() {
+		return 0;
+	}
+
+	protected abstract void layout(int width, int height);
+
+	protected abstract void paint(Graphics graphics);
+
+	protected void setExtent(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getLeft() {
+		return left;
+	}
+
+	public int getTop() {
+		return top;
+	}
+
+	void setPosition(int left, int top) {
+		this.left = left;
+		this.top = top;
+	}
+
+	public Manager getManager() {
+		return manager;
+	}
+
+	void setManager(Manager manager) {
+		this.manager = manager;
+	}
+
+	public int getVisualState() {
+		return visualState;
+	}
+
+	public void setBackground(Background background) {
+		this.background = background;
+	}
+
+	public void setBackground(int visual, Background background) {
+		stateBackgrounds.put(new Integer(visual), background);
+	}
+
+	public Background getBackground() {
+		Background stateBackground = (Background) stateBackgrounds.get(new Integer(visualState));
+		return stateBackground != null ? stateBackground : background;
+	}
+
+	protected void onFocus(int direction) {
+		visualState = VISUAL_STATE_FOCUS;
+		invalidate();
+	}
+
+	protected void onUnfocus() {
+		visualState = VISUAL_STATE_NORMAL;
+		invalidate();
+	}
+
+	protected boolean navigationClick(int status, int time) {
+		visualState = VISUAL_STATE_ACTIVE;
+		invalidate();
+		return true;
+	}
+
+	protected boolean navigationUnclick(int status, int time) {
+		visualState = VISUAL_STATE_FOCUS;
+		invalidate();
+		return true;
+	}
+
+	protected void invalidate() {
+		invalidate(0, 0, width, height);
+	}
+
+	protected void invalidate(int x, int y, int width, int height) {
+	}
+}
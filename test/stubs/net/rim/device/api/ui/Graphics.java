@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package net.rim.device.api.ui;
+
+import net.rim.device.api.system.Bitmap;
+
+/**
+ * Desktop stand-in for the RIM Graphics.  A Graphics created on a Bitmap draws into it, copying
+ * pixels without blending and clipping to the bitmap; one created without a Bitmap draws nothing.
+ * Every drawing call is counted.
+ */
+public class Graphics {
+
+	private Bitmap bitmap;
+	private int color;
+	private int globalAlpha = 0xFF;
+	private int drawCalls;
+
+	public Graphics() {
+	}
+
+	public Graphics(Bitmap bitmap) {
+		this.bitmap = bitmap;
+	}
+
+	public int getColor() {
+		return color;
+	}
+
+	public void setColor(int color) {
+		this.color = color & 0xFFFFFF;
+	}
+
+	public int getGlobalAlpha() {
+		return globalAlpha;
+	}
+
+	public void setGlobalAlpha(int globalAlpha) {
+		this.globalAlpha = globalAlpha & 0xFF;
+	}
+
+	public void fillRect(int x, int y, int width, int height) {
+		drawCalls++;
+		if (bitmap == null) {
+			return;
+		}
+
+		int left = Math.max(x, 0);
+		int top = Math.max(y, 0);
+		int right = Math.min(x + width, bitmap.getWidth());
+		int bottom = Math.min(y + height, bitmap.getHeight());
+		if (right <= left || bottom <= top) {
+			return;
+		}
+
+		int[] row = new int[right - left];
+		for (int i = 0; i < row.length; i++) {
+			row[i] = globalAlpha << 24 | color;
+		}
+		for (int j = top; j < bottom; j++) {
+			bitmap.setARGB(row, 0, row.length, left, j, row.length, 1);
+		}
+	}
+
+	public void drawBitmap(int x, int y, int width, int height, Bitmap src, int left, int top) {
+		drawCalls++;
+		if (bitmap == null) {
+			return;
+		}
+
+		// clip to both bitmaps
+		width = Math.min(width, src.getWidth() - left);
+		height = Math.min(height, src.getHeight() - top);
+		if (x < 0) {
+			width += x;
+			left -= x;
+			x = 0;
+		}
+		if (y < 0) {
+			height += y;
+			top -= y;
+			y = 0;
+		}
+		width = Math.min(width, bitmap.getWidth() - x);
+		height = Math.min(height, bitmap.getHeight() - y);
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+
+		int[] pixels = new int[width * height];
+		src.getARGB(pixels, 0, width, left, top, width, height);
+		bitmap.setARGB(pixels, 0, width, x, y, width, height);
+	}
+
+	/**
+	 * Gets the number of drawing calls made so far.  Not part of the RIM API.
+	 * 
+	 * @return the number of calls to fillRect and drawBitmap
+	 */
+	public int getDrawCalls() {
+		return drawCalls;
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2011 Mobiata, LLC.
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without 
+ * restriction, including without limitation the rights to use, 
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the 
+ * Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES 
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, 
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING 
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR 
+ * OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * This License shall be included in all copies or substantial 
+ * portions of the Software.
+ * 
+ * The name(s) of the above copyright holders shall not be used 
+ * in advertising or otherwise to promote the sale, use or other 
+ * dealings in this Software without prior written authorization.
+ * 
+ */
+package net.rim.device.api.ui;
+
+import java.util.Vector;
+
+/**
+ * Desktop stand-in for the RIM Manager, holding its children and its virtual extent and
+ * vertical scroll position.  Painting paints every child, without moving the graphics context
+ * to the child's position.
+ */
+public abstract class Manager extends Field {
+
+	public static final long VERTICAL_SCROLL = 0x0001000000000000L;
+
+	private Vector fields = new Vector();
+	private int virtualWidth;
+	private int virtualHeight;
+	private int verticalScroll;
+
+	public Manager(long style) {
+		super(style);
+	}
+
+	public void add(Field field) {
+		fields.addElement(field);
+		field.setManager(this);
+	}
+
+	public void delete(Field field) {
+		fields.removeElement(field);
+		field.setManager(null);
+	}
+
+	public int getFieldCount() {
+		return fields.size();
+	}
+
+	public Field getField(int index) {
+		return (Field) fields.elementAt(index);
+	}
+
+	protected int getPreferredWidthOfChild(Field field) {
+		return field.getPreferredWidth();
+	}
+
+	protected int getPreferredHeightOfChild(Field field) {
+		return field.getPreferredHeight();
+	}
+
+	protected void setPositionChild(Field field, int x, int y) {
+		field.setPosition(x, y);
+	}
+
+	protected void layoutChild(Field field, int width, int height) {
+		field.layout(width, height);
+	}
+
+	protected abstract void sublayout(int width, int height);
+
+	protected void layout(int width, int height) {
+		sublayout(width, height);
+	}
+
+	protected void setExtent(int width, int height) {
+		super.setExtent(width, height);
+		virtualWidth = width;
+		virtualHeight = height;
+	}
+
+	protected void setVirtualExtent(int width, int height) {
+		virtualWidth = width;
+		virtualHeight = height;
+	}
+
+	public int getVirtualWidth() {
+		return virtualWidth;
+	}
+
+	public int getVirtualHeight() {
+		return virtualHeight;
+	}
+
+	public int getVerticalScroll() {
+		return verticalScroll;
+	}
+
+	public void setVerticalScroll(int position) {
+		verticalScroll = position;
+	}
+
+	protected void paint(Graphics graphics) {
+		subpaint(graphics);
+	}
+
+	protected void subpaint(Graphics graphics) {
+		for (int i = 0; i < getFieldCount(); i++) {
+			getField(i).paint(graphics);
+		}
+	}
+}